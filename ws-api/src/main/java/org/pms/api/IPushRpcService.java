@@ -1,5 +1,6 @@
 package org.pms.api;
 
+import org.pms.api.dto.PresenceChanges;
 import org.pms.types.Response;
 
 import java.util.Map;
@@ -12,13 +13,54 @@ import java.util.Map;
  */
 public interface IPushRpcService {
 	
+	/**
+	 * 幂等key请求头，调用方重试时需携带相同的值
+	 */
+	String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+	
 	/**
 	 * 广播告警消息给所有在线用户
 	 *
 	 * @param alertData 告警数据
 	 * @return 响应结果
 	 */
-	Response<Void> broadcast(Map<String, Object> alertData);
+	default Response<Void> broadcast(Map<String, Object> alertData) {
+		return broadcast(null, alertData);
+	}
+	
+	/**
+	 * 广播告警消息给所有在线用户（幂等）
+	 * 相同幂等key的重复请求只会补发给之前未送达的用户；之前的请求仍在发送的用户会等待其结果，
+	 * 等待超时的用户在响应中计为未确认，可稍后用相同幂等key再次重试
+	 *
+	 * @param idempotencyKey 幂等key，为空时不去重
+	 * @param alertData      告警数据
+	 * @return 响应结果
+	 */
+	Response<Void> broadcast(String idempotencyKey, Map<String, Object> alertData);
+	
+	/**
+	 * 按受众广播告警消息，多个受众取并集
+	 * 受众可以是角色（如ROLE_admin、ROLE_operator），也可以是会话属性（如district=east、clientType=kiosk）
+	 * 角色来自已校验的token；会话属性由客户端握手时自行声明，不可用于涉及权限的定向推送
+	 *
+	 * @param audiences 受众列表，不能为空
+	 * @param alertData 告警数据
+	 * @return 响应结果
+	 */
+	default Response<Void> broadcastToAudience(String[] audiences, Map<String, Object> alertData) {
+		return broadcastToAudience(null, audiences, alertData);
+	}
+	
+	/**
+	 * 按受众广播告警消息（幂等）
+	 *
+	 * @param idempotencyKey 幂等key，为空时不去重
+	 * @param audiences      受众列表
+	 * @param alertData      告警数据
+	 * @return 响应结果
+	 */
+	Response<Void> broadcastToAudience(String idempotencyKey, String[] audiences, Map<String, Object> alertData);
 	
 	/**
 	 * 推送告警消息给指定用户列表
@@ -26,6 +68,38 @@ public interface IPushRpcService {
 	 * @param request 请求参数（包含userIds和alertData）
 	 * @return 响应结果
 	 */
-	Response<Void> pushToUsers(Long[] userIds, Map<String, Object> request);
+	default Response<Void> pushToUsers(Long[] userIds, Map<String, Object> request) {
+		return pushToUsers(null, userIds, request);
+	}
+	
+	/**
+	 * 推送告警消息给指定用户列表（幂等）
+	 *
+	 * @param idempotencyKey 幂等key，为空时不去重
+	 * @param userIds        用户ID列表
+	 * @param request        告警数据
+	 * @return 响应结果
+	 */
+	Response<Void> pushToUsers(String idempotencyKey, Long[] userIds, Map<String, Object> request);
+	
+	/**
+	 * 批量查询用户在线状态
+	 * 返回Base64编码的位图，第i位对应userIds[i]，1表示在线，可用PresenceBitmap.decode解码
+	 *
+	 * @param userIds 用户ID列表
+	 * @return 在线状态位图
+	 */
+	Response<String> queryPresence(Long[] userIds);
+	
+	/**
+	 * 拉取在线状态变更事件
+	 * 调用方保存返回的epoch和lastSeq并在下次查询时传回；truncated为true时需先用queryPresence重新同步
+	 *
+	 * @param epoch    上次返回的epoch，首次不传
+	 * @param afterSeq 上次拉取到的事件序号，首次传0
+	 * @param limit    单次最多返回的事件数
+	 * @return 变更事件批次
+	 */
+	Response<PresenceChanges> queryPresenceChanges(String epoch, Long afterSeq, Integer limit);
 	
 }
@@ -0,0 +1,37 @@
+package org.pms.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * @author alcsyooterranf
+ * @program PressureMonitorSys-ws
+ * @description 在线状态变更事件批次
+ * @create 2026/10/18
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PresenceChanges {
+	
+	/**
+	 * 事件日志的启动标识，节点每次启动生成新值，下次查询时原样传回
+	 */
+	private String epoch;
+	
+	/**
+	 * 本批最后一个事件的序号，下次查询作为afterSeq传入
+	 */
+	private Long lastSeq;
+	
+	/**
+	 * true-afterSeq之后的部分事件已被淘汰或节点已重启（epoch不一致），调用方应先用全量在线查询重新同步
+	 */
+	private Boolean truncated;
+	
+	private List<PresenceEvent> events;
+	
+}
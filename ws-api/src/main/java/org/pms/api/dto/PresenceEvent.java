@@ -0,0 +1,32 @@
+package org.pms.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * @author alcsyooterranf
+ * @program PressureMonitorSys-ws
+ * @description 用户在线状态变更事件
+ * @create 2026/10/18
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PresenceEvent {
+	
+	/**
+	 * 事件序号，单节点内单调递增
+	 */
+	private Long seq;
+	
+	private Long userId;
+	
+	/**
+	 * true-上线，false-下线
+	 */
+	private Boolean online;
+	
+	private Long timestamp;
+	
+}
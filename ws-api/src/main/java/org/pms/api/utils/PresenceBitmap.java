@@ -0,0 +1,28 @@
+package org.pms.api.utils;
+
+import java.util.Base64;
+import java.util.BitSet;
+
+/**
+ * @author alcsyooterranf
+ * @program PressureMonitorSys-ws
+ * @description 在线状态位图编解码, 第i位对应请求中第i个userId, 1表示在线; 字节内低位在前, 整体Base64编码
+ * @create 2026/10/18
+ */
+public final class PresenceBitmap {
+	
+	private PresenceBitmap() {
+	}
+	
+	public static String encode(BitSet bits) {
+		return Base64.getEncoder().encodeToString(bits.toByteArray());
+	}
+	
+	public static BitSet decode(String bitmap) {
+		if (bitmap == null || bitmap.isEmpty()) {
+			return new BitSet();
+		}
+		return BitSet.valueOf(Base64.getDecoder().decode(bitmap));
+	}
+	
+}
@@ -0,0 +1,57 @@
+package org.pms.core.filter;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * 已编译的告警订阅过滤器
+ * 由AlertFilterCompiler解析表达式生成，相同（规范化后）表达式视为同一过滤器，
+ * 广播时每条告警对同一过滤器只求值一次
+ *
+ * @author alcsyooterranf
+ * @version 1.0
+ * @since 2026-10-18
+ */
+public final class AlertFilter implements Predicate<Map<String, Object>> {
+	
+	/**
+	 * 规范化后的表达式
+	 */
+	private final String expression;
+	
+	private final Predicate<Map<String, Object>> predicate;
+	
+	AlertFilter(String expression, Predicate<Map<String, Object>> predicate) {
+		this.expression = expression;
+		this.predicate = predicate;
+	}
+	
+	public String getExpression() {
+		return expression;
+	}
+	
+	@Override
+	public boolean test(Map<String, Object> alertData) {
+		return predicate.test(alertData);
+	}
+	
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		return o instanceof AlertFilter other && Objects.equals(expression, other.expression);
+	}
+	
+	@Override
+	public int hashCode() {
+		return expression.hashCode();
+	}
+	
+	@Override
+	public String toString() {
+		return expression;
+	}
+	
+}
@@ -0,0 +1,285 @@
+package org.pms.core.filter;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 告警订阅过滤表达式编译器
+ * 表达式为若干条件的与（&& 或 and），条件格式为 字段 运算符 值，例如：
+ * pressure < 0.3 && district == 'east' && severity >= WARN
+ * <p>
+ * 运算符：== (=)、!=、<、<=、>、>=
+ * 值：数字按数值比较；带引号或非数字按字符串比较；severity按INFO < WARN < ERROR < CRITICAL比较
+ * 字段支持 a.b 形式访问嵌套对象，字段缺失时只有 != 成立；severity取值不在上述级别内时视同缺失
+ * <p>
+ * 表达式在订阅时解析一次，规范化后相同的表达式复用同一个AlertFilter实例
+ *
+ * @author alcsyooterranf
+ * @version 1.0
+ * @since 2026-10-18
+ */
+@Component
+public class AlertFilterCompiler {
+	
+	private static final int MAX_EXPRESSION_LENGTH = 512;
+	
+	private static final int MAX_CLAUSES = 16;
+	
+	/**
+	 * 复用实例的缓存上限，超出后新表达式仍可编译，只是不再复用
+	 */
+	private static final int MAX_CACHED_FILTERS = 1024;
+	
+	private static final Pattern CLAUSE = Pattern.compile("^([A-Za-z_][\\w.]*)\\s*(==|!=|>=|<=|=|>|<)\\s*(.+)$");
+	
+	/**
+	 * 有序枚举字段，按列表顺序比较大小（忽略大小写）
+	 */
+	private static final Map<String, List<String>> ORDERED_FIELDS = Map.of(
+			"severity", List.of("INFO", "WARN", "ERROR", "CRITICAL")
+	);
+	
+	// key: 规范化表达式, value: 编译后的过滤器
+	private final ConcurrentHashMap<String, AlertFilter> filterCache = new ConcurrentHashMap<>();
+	
+	/**
+	 * 编译过滤表达式
+	 *
+	 * @param expression 过滤表达式
+	 * @return 编译后的过滤器
+	 * @throws IllegalArgumentException 表达式非法时抛出
+	 */
+	public AlertFilter compile(String expression) {
+		if (StringUtils.isBlank(expression)) {
+			throw new IllegalArgumentException("过滤表达式为空");
+		}
+		if (expression.length() > MAX_EXPRESSION_LENGTH) {
+			throw new IllegalArgumentException("过滤表达式过长, 最大长度为" + MAX_EXPRESSION_LENGTH);
+		}
+		
+		List<String> parts = splitConjunction(expression.trim());
+		if (parts.size() > MAX_CLAUSES) {
+			throw new IllegalArgumentException("过滤条件过多, 最多" + MAX_CLAUSES + "个");
+		}
+		
+		// 条件按规范化文本排序，使 a && b 与 b && a 得到同一个过滤器
+		Map<String, Predicate<Map<String, Object>>> predicates = new TreeMap<>();
+		for (String part : parts) {
+			Matcher matcher = CLAUSE.matcher(part.trim());
+			if (!matcher.matches()) {
+				throw new IllegalArgumentException("无法解析过滤条件: " + part);
+			}
+			String field = matcher.group(1);
+			String op = "=".equals(matcher.group(2)) ? "==" : matcher.group(2);
+			String rawValue = matcher.group(3).trim();
+			
+			String normalized = normalizeClause(field, op, rawValue);
+			predicates.put(normalized, compileClause(field, op, rawValue));
+		}
+		String normalizedExpression = String.join(" && ", predicates.keySet());
+		
+		AlertFilter cached = filterCache.get(normalizedExpression);
+		if (cached != null) {
+			return cached;
+		}
+		List<Predicate<Map<String, Object>>> clauses = List.copyOf(predicates.values());
+		AlertFilter filter = new AlertFilter(normalizedExpression, alertData -> {
+			for (Predicate<Map<String, Object>> clause : clauses) {
+				if (!clause.test(alertData)) {
+					return false;
+				}
+			}
+			return true;
+		});
+		if (filterCache.size() >= MAX_CACHED_FILTERS) {
+			return filter;
+		}
+		AlertFilter existing = filterCache.putIfAbsent(normalizedExpression, filter);
+		return existing != null ? existing : filter;
+	}
+	
+	/**
+	 * 按 && / and 拆分条件，引号内的内容不拆分
+	 */
+	private static List<String> splitConjunction(String expression) {
+		List<String> parts = new ArrayList<>();
+		StringBuilder current = new StringBuilder();
+		char quote = 0;
+		int i = 0;
+		while (i < expression.length()) {
+			char c = expression.charAt(i);
+			if (quote != 0) {
+				if (c == quote) {
+					quote = 0;
+				}
+				current.append(c);
+				i++;
+				continue;
+			}
+			if (c == '\'' || c == '"') {
+				quote = c;
+				current.append(c);
+				i++;
+				continue;
+			}
+			if (expression.startsWith("&&", i)) {
+				parts.add(current.toString());
+				current.setLength(0);
+				i += 2;
+				continue;
+			}
+			if (Character.isWhitespace(c) && isAndKeyword(expression, i + 1)) {
+				parts.add(current.toString());
+				current.setLength(0);
+				i += 4;
+				continue;
+			}
+			current.append(c);
+			i++;
+		}
+		if (quote != 0) {
+			throw new IllegalArgumentException("引号未闭合: " + expression);
+		}
+		parts.add(current.toString());
+		return parts;
+	}
+	
+	/**
+	 * 判断from处是否为独立的 and 关键字（前面已确认是空白，后面须为空白）
+	 */
+	private static boolean isAndKeyword(String expression, int from) {
+		return expression.regionMatches(true, from, "and", 0, 3)
+				&& from + 3 < expression.length()
+				&& Character.isWhitespace(expression.charAt(from + 3));
+	}
+	
+	private static String normalizeClause(String field, String op, String rawValue) {
+		// 有序字段优先处理，WARN、'warn'、"Warn" 规范化为同一形式
+		if (ORDERED_FIELDS.containsKey(field)) {
+			String literal = isQuoted(rawValue) ? unquote(rawValue) : rawValue;
+			return field + " " + op + " " + literal.toUpperCase();
+		}
+		if (isQuoted(rawValue)) {
+			return field + " " + op + " '" + unquote(rawValue) + "'";
+		}
+		BigDecimal number = parseNumber(rawValue);
+		if (number != null) {
+			return field + " " + op + " " + number.stripTrailingZeros().toPlainString();
+		}
+		return field + " " + op + " '" + rawValue + "'";
+	}
+	
+	private static Predicate<Map<String, Object>> compileClause(String field, String op, String rawValue) {
+		String[] path = field.split("\\.");
+		boolean quoted = isQuoted(rawValue);
+		String literal = quoted ? unquote(rawValue) : rawValue;
+		
+		List<String> levels = ORDERED_FIELDS.get(field);
+		if (levels != null) {
+			int expectedRank = rank(levels, literal);
+			if (expectedRank < 0) {
+				throw new IllegalArgumentException("未知的" + field + "取值: " + literal + ", 可选值: " + levels);
+			}
+			return alertData -> {
+				Object actual = resolve(alertData, path);
+				int actualRank = actual == null ? -1 : rank(levels, actual.toString());
+				if (actualRank < 0) {
+					return "!=".equals(op);
+				}
+				return matches(op, Integer.compare(actualRank, expectedRank));
+			};
+		}
+		
+		BigDecimal number = quoted ? null : parseNumber(literal);
+		if (number != null) {
+			double expected = number.doubleValue();
+			return alertData -> {
+				Object actual = resolve(alertData, path);
+				Double actualNumber = toDouble(actual);
+				if (actualNumber == null) {
+					return "!=".equals(op);
+				}
+				return matches(op, Double.compare(actualNumber, expected));
+			};
+		}
+		
+		return alertData -> {
+			Object actual = resolve(alertData, path);
+			if (actual == null) {
+				return "!=".equals(op);
+			}
+			return matches(op, actual.toString().compareTo(literal));
+		};
+	}
+	
+	private static boolean matches(String op, int compareResult) {
+		return switch (op) {
+			case "==" -> compareResult == 0;
+			case "!=" -> compareResult != 0;
+			case "<" -> compareResult < 0;
+			case "<=" -> compareResult <= 0;
+			case ">" -> compareResult > 0;
+			case ">=" -> compareResult >= 0;
+			default -> false;
+		};
+	}
+	
+	private static Object resolve(Map<String, Object> alertData, String[] path) {
+		Object current = alertData;
+		for (String key : path) {
+			if (!(current instanceof Map<?, ?> map)) {
+				return null;
+			}
+			current = map.get(key);
+		}
+		return current;
+	}
+	
+	private static Double toDouble(Object value) {
+		if (value instanceof Number number) {
+			return number.doubleValue();
+		}
+		if (value instanceof String text) {
+			BigDecimal number = parseNumber(text.trim());
+			return number != null ? number.doubleValue() : null;
+		}
+		return null;
+	}
+	
+	private static int rank(List<String> levels, String value) {
+		for (int i = 0; i < levels.size(); i++) {
+			if (levels.get(i).equalsIgnoreCase(value)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	private static BigDecimal parseNumber(String value) {
+		try {
+			return new BigDecimal(value);
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+	
+	private static boolean isQuoted(String value) {
+		return value.length() >= 2
+				&& ((value.startsWith("'") && value.endsWith("'")) || (value.startsWith("\"") && value.endsWith("\"")));
+	}
+	
+	private static String unquote(String value) {
+		return value.substring(1, value.length() - 1);
+	}
+	
+}
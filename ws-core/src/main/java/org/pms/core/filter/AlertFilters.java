@@ -0,0 +1,44 @@
+package org.pms.core.filter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 告警过滤器工具
+ *
+ * @author alcsyooterranf
+ * @version 1.0
+ * @since 2026-10-18
+ */
+public final class AlertFilters {
+	
+	private AlertFilters() {
+	}
+	
+	/**
+	 * 按订阅过滤器筛选接收者
+	 * 同一条告警对相同的过滤器只求值一次，结果在订阅了该过滤器的接收者间共享
+	 *
+	 * @param subscribers 接收者
+	 * @param filterOf    接收者的订阅过滤器，为null表示接收全部告警
+	 * @param alertData   告警数据
+	 * @return 需要发送的接收者
+	 */
+	public static <T> List<T> select(Collection<T> subscribers, Function<T, AlertFilter> filterOf,
+	                                 Map<String, Object> alertData) {
+		List<T> recipients = new ArrayList<>(subscribers.size());
+		Map<AlertFilter, Boolean> verdicts = new HashMap<>();
+		for (T subscriber : subscribers) {
+			AlertFilter filter = filterOf.apply(subscriber);
+			if (filter == null || verdicts.computeIfAbsent(filter, it -> it.test(alertData))) {
+				recipients.add(subscriber);
+			}
+		}
+		return recipients;
+	}
+	
+}
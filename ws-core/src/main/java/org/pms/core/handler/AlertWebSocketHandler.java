@@ -1,24 +1,32 @@
 package org.pms.core.handler;
 
 import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.pms.api.dto.AuthenticatedUser;
 import org.pms.api.utils.JwtUtil;
 import org.pms.api.utils.JwtVerifier;
+import org.pms.core.filter.AlertFilter;
+import org.pms.core.filter.AlertFilterCompiler;
+import org.pms.core.service.PublicKeyService;
+import org.pms.core.service.SessionDrainService;
 import org.pms.core.service.WebSocketSessionManager;
 import org.pms.types.WsConstants;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import java.net.URI;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * 告警WebSocket处理器
@@ -32,9 +40,35 @@ import java.util.Map;
 @Component
 public class AlertWebSocketHandler extends TextWebSocketHandler {
 	
+	/**
+	 * 握手query参数中可作为受众属性的key（如 ?token=xxx&district=east&clientType=kiosk）
+	 * 注意：token中只有userId、username和角色，这些属性是客户端自行声明的，任何用户都可以声明任意取值，
+	 * 只能用于减少无关推送（如大屏按片区订阅），涉及权限的定向推送必须按角色受众
+	 */
+	private static final Set<String> AUDIENCE_ATTRIBUTE_KEYS = Set.of("district", "clientType");
+	
+	/**
+	 * 单次发送最长耗时（毫秒），超时则关闭会话
+	 */
+	private static final int SEND_TIME_LIMIT = 10 * 1000;
+	
+	/**
+	 * 会话发送缓冲区上限（字节），超出则关闭会话
+	 */
+	private static final int SEND_BUFFER_SIZE_LIMIT = 512 * 1024;
+	
 	@Resource
 	private WebSocketSessionManager sessionManager;
 	
+	@Resource
+	private SessionDrainService drainService;
+	
+	@Resource
+	private AlertFilterCompiler alertFilterCompiler;
+	
+	@Resource
+	private PublicKeyService publicKeyService;
+	
 	/**
 	 * WebSocket连接建立后调用
 	 */
@@ -42,6 +76,21 @@ public class AlertWebSocketHandler extends TextWebSocketHandler {
 	public void afterConnectionEstablished(WebSocketSession session) throws Exception {
 		log.info("WebSocket连接建立: sessionId={}", session.getId());
 		
+		// 节点排空中，不再接收新会话，让客户端延迟后重连到其他节点
+		if (drainService.isDraining()) {
+			log.info("节点排空中，拒绝新会话: sessionId={}", session.getId());
+			session.close(drainService.reconnectCloseStatus());
+			return;
+		}
+		
+		// 公钥未就绪时无法验签，返回可重试的关闭状态，而不是按认证失败处理
+		if (!publicKeyService.isKeyLoaded()) {
+			log.warn("公钥未就绪，拒绝WebSocket握手: sessionId={}", session.getId());
+			publicKeyService.requestRefresh();
+			session.close(CloseStatus.SERVICE_OVERLOAD.withReason("Public key not ready, retry later"));
+			return;
+		}
+		
 		try {
 			// 1. 从query参数获取token
 			String token = extractToken(session);
@@ -51,8 +100,13 @@ public class AlertWebSocketHandler extends TextWebSocketHandler {
 				return;
 			}
 			
-			// 2. 验证token
-			JwtUtil.validateToken(token);
+			// 2. 验证token，失败时可能是认证服务已轮换密钥，触发一次公钥刷新
+			try {
+				JwtUtil.validateToken(token);
+			} catch (Exception e) {
+				publicKeyService.requestRefresh();
+				throw e;
+			}
 			
 			// 3. 从token中获取用户信息
 			AuthenticatedUser authenticatedUser = JwtVerifier.getAuthenticatedUser(token);
@@ -69,17 +123,28 @@ public class AlertWebSocketHandler extends TextWebSocketHandler {
 				return;
 			}
 			
-			// 5. 将session存入管理器
-			sessionManager.addSession(userId, username, session);
+			// 5. 阻塞式会话包装为带发送缓冲的并发安全会话（非阻塞会话自带出站队列，无需包装），连同角色、属性存入管理器
+			WebSocketSession outbound = session instanceof NonBlockingWebSocketSession
+					? session
+					: new ConcurrentWebSocketSessionDecorator(session, SEND_TIME_LIMIT, SEND_BUFFER_SIZE_LIMIT);
+			sessionManager.addSession(userId, username, new HashSet<>(authenticatedUser.getAuthorities()),
+					extractAttributes(session), outbound);
 			log.info("WebSocket连接成功: userId={}, username={}, sessionId={}", userId, username, session.getId());
 			
+			// 登记前通过了排空检查、登记时排空已开始的会话，可能不在排空快照中，这里直接关闭
+			if (drainService.isDraining()) {
+				log.info("节点排空中，关闭刚登记的会话: sessionId={}", session.getId());
+				outbound.close(drainService.reconnectCloseStatus());
+				return;
+			}
+			
 			// 6. 发送欢迎消息
 			Map<String, Object> welcomeMsg = new HashMap<>();
 			welcomeMsg.put("type", "welcome");
 			welcomeMsg.put("message", "WebSocket连接成功");
 			welcomeMsg.put("userId", userId);
 			welcomeMsg.put("username", username);
-			session.sendMessage(new TextMessage(JSON.toJSONString(welcomeMsg)));
+			outbound.sendMessage(new TextMessage(JSON.toJSONString(welcomeMsg)));
 			
 		} catch (Exception e) {
 			log.error("WebSocket连接建立失败: sessionId={}, error={}", session.getId(), e.getMessage(), e);
@@ -89,6 +154,8 @@ public class AlertWebSocketHandler extends TextWebSocketHandler {
 	
 	/**
 	 * 接收到客户端消息时调用
+	 * 支持心跳 ping，以及订阅过滤：
+	 * {"type":"subscribe","filter":"pressure < 0.3 && severity >= WARN"} / {"type":"unsubscribe"}
 	 */
 	@Override
 	protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
@@ -97,10 +164,58 @@ public class AlertWebSocketHandler extends TextWebSocketHandler {
 		
 		// 可以处理客户端发送的心跳消息等
 		if ("ping".equals(payload)) {
-			session.sendMessage(new TextMessage("pong"));
+			outbound(session).sendMessage(new TextMessage("pong"));
+			return;
+		}
+		
+		if (StringUtils.startsWith(StringUtils.trim(payload), "{")) {
+			JSONObject command;
+			try {
+				command = JSON.parseObject(payload);
+			} catch (Exception e) {
+				log.warn("无法解析WebSocket指令: sessionId={}, error={}", session.getId(), e.getMessage());
+				return;
+			}
+			handleCommand(session, command);
 		}
 	}
 	
+	/**
+	 * 处理客户端JSON指令
+	 *
+	 * @param session WebSocket会话
+	 * @param command 指令
+	 */
+	private void handleCommand(WebSocketSession session, JSONObject command) throws Exception {
+		WebSocketSessionManager.SessionInfo sessionInfo = sessionManager.getSessionInfo(session.getId());
+		if (sessionInfo == null) {
+			return;
+		}
+		
+		Map<String, Object> reply = new HashMap<>();
+		String type = command.getString("type");
+		if ("subscribe".equals(type)) {
+			try {
+				AlertFilter filter = alertFilterCompiler.compile(command.getString("filter"));
+				sessionInfo.setFilter(filter);
+				log.info("设置订阅过滤: userId={}, sessionId={}, filter={}", sessionInfo.getUserId(), session.getId(), filter);
+				reply.put("type", "subscribed");
+				reply.put("filter", filter.getExpression());
+			} catch (IllegalArgumentException e) {
+				reply.put("type", "error");
+				reply.put("message", e.getMessage());
+			}
+		} else if ("unsubscribe".equals(type)) {
+			sessionInfo.setFilter(null);
+			log.info("清除订阅过滤: userId={}, sessionId={}", sessionInfo.getUserId(), session.getId());
+			reply.put("type", "unsubscribed");
+		} else {
+			reply.put("type", "error");
+			reply.put("message", "Unsupported type: " + type);
+		}
+		sessionInfo.getSession().sendMessage(new TextMessage(JSON.toJSONString(reply)));
+	}
+	
 	/**
 	 * WebSocket连接关闭后调用
 	 */
@@ -122,6 +237,17 @@ public class AlertWebSocketHandler extends TextWebSocketHandler {
 		}
 	}
 	
+	/**
+	 * 获取会话对应的发送通道，已登记的会话走带缓冲的并发安全包装，避免与推送并发写
+	 *
+	 * @param session WebSocket会话
+	 * @return 用于发送消息的会话
+	 */
+	private WebSocketSession outbound(WebSocketSession session) {
+		WebSocketSessionManager.SessionInfo sessionInfo = sessionManager.getSessionInfo(session.getId());
+		return sessionInfo != null ? sessionInfo.getSession() : session;
+	}
+	
 	/**
 	 * 从WebSocket握手请求的query参数中提取token
 	 *
@@ -129,16 +255,7 @@ public class AlertWebSocketHandler extends TextWebSocketHandler {
 	 * @return token字符串
 	 */
 	private String extractToken(WebSocketSession session) {
-		URI uri = session.getUri();
-		if (uri == null) {
-			return null;
-		}
-		
-		// 解析query参数
-		Map<String, String> queryParams = UriComponentsBuilder.fromUri(uri)
-				.build()
-				.getQueryParams()
-				.toSingleValueMap();
+		Map<String, String> queryParams = extractQueryParams(session);
 		
 		// 获取token参数
 		String token = queryParams.get("token");
@@ -152,5 +269,38 @@ public class AlertWebSocketHandler extends TextWebSocketHandler {
 		return token;
 	}
 	
+	/**
+	 * 从WebSocket握手请求的query参数中提取受众属性（客户端自行声明，未经校验）
+	 *
+	 * @param session WebSocket会话
+	 * @return 属性Map，只包含AUDIENCE_ATTRIBUTE_KEYS中的key
+	 */
+	private Map<String, String> extractAttributes(WebSocketSession session) {
+		Map<String, String> attributes = new HashMap<>();
+		extractQueryParams(session).forEach((key, value) -> {
+			if (AUDIENCE_ATTRIBUTE_KEYS.contains(key) && StringUtils.isNotBlank(value)) {
+				attributes.put(key, value);
+			}
+		});
+		return attributes;
+	}
+	
+	/**
+	 * 解析WebSocket握手请求的query参数
+	 *
+	 * @param session WebSocket会话
+	 * @return query参数Map，uri为空时返回空Map
+	 */
+	private Map<String, String> extractQueryParams(WebSocketSession session) {
+		URI uri = session.getUri();
+		if (uri == null) {
+			return Map.of();
+		}
+		return UriComponentsBuilder.fromUri(uri)
+				.build()
+				.getQueryParams()
+				.toSingleValueMap();
+	}
+	
 }
 
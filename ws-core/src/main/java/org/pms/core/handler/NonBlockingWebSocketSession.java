@@ -0,0 +1,23 @@
+package org.pms.core.handler;
+
+import org.springframework.web.socket.WebSocketSession;
+
+/**
+ * 非阻塞WebSocket会话
+ * sendMessage只写入会话自身的出站队列，可并发调用，不需要再包装ConcurrentWebSocketSessionDecorator
+ * 排空时通过待发送消息数判断出站数据是否已刷完
+ *
+ * @author alcsyooterranf
+ * @version 1.0
+ * @since 2026-10-18
+ */
+public interface NonBlockingWebSocketSession extends WebSocketSession {
+	
+	/**
+	 * 出站队列中尚未写出的消息数
+	 *
+	 * @return 待发送消息数
+	 */
+	int getPendingMessageCount();
+	
+}
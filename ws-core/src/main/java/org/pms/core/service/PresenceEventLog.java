@@ -0,0 +1,79 @@
+package org.pms.core.service;
+
+import jakarta.annotation.PostConstruct;
+import org.apache.commons.lang3.StringUtils;
+import org.pms.api.dto.PresenceChanges;
+import org.pms.api.dto.PresenceEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 在线状态变更事件日志
+ * 固定容量的环形缓冲区，按序号记录用户上线/下线事件，调用方按序号增量拉取
+ * 容量耗尽后覆盖最早的事件，拉取时据此返回truncated标记
+ * 序号只在本次启动内有效，每次启动生成新的epoch，调用方传回的epoch不一致时同样返回truncated
+ *
+ * @author alcsyooterranf
+ * @version 1.0
+ * @since 2026-10-18
+ */
+@Service
+public class PresenceEventLog {
+	
+	// 保留的事件数量
+	@Value("${ws.presence.event-capacity:65536}")
+	private int capacity;
+	
+	private PresenceEvent[] ring;
+	
+	// 本次启动的标识
+	private final String epoch = UUID.randomUUID().toString();
+	
+	// 下一个事件的序号，从1开始
+	private long nextSeq = 1;
+	
+	@PostConstruct
+	public void init() {
+		ring = new PresenceEvent[capacity];
+	}
+	
+	/**
+	 * 记录在线状态变更
+	 *
+	 * @param userId 用户ID
+	 * @param online true-上线，false-下线
+	 */
+	public synchronized void record(Long userId, boolean online) {
+		long seq = nextSeq++;
+		ring[(int) (seq % capacity)] = new PresenceEvent(seq, userId, online, System.currentTimeMillis());
+	}
+	
+	/**
+	 * 拉取afterSeq之后的事件
+	 *
+	 * @param epoch    调用方上次拿到的epoch，为空表示首次拉取
+	 * @param afterSeq 已拉取到的事件序号
+	 * @param limit    最多返回的事件数
+	 * @return 变更事件批次
+	 */
+	public synchronized PresenceChanges since(String epoch, long afterSeq, int limit) {
+		long oldestSeq = Math.max(1, nextSeq - capacity);
+		// epoch不一致说明序号来自上一次启动，需要重新同步
+		boolean reset = StringUtils.isBlank(epoch) ? afterSeq > 0 : !this.epoch.equals(epoch);
+		boolean truncated = reset || afterSeq + 1 < oldestSeq;
+		long start = reset ? oldestSeq : Math.max(afterSeq + 1, oldestSeq);
+		long end = Math.min(nextSeq, start + limit);
+		
+		List<PresenceEvent> events = new ArrayList<>((int) Math.max(0, end - start));
+		for (long seq = start; seq < end; seq++) {
+			events.add(ring[(int) (seq % capacity)]);
+		}
+		long lastSeq = events.isEmpty() ? nextSeq - 1 : end - 1;
+		return new PresenceChanges(this.epoch, lastSeq, truncated, events);
+	}
+	
+}
@@ -0,0 +1,26 @@
+package org.pms.core.service;
+
+/**
+ * JWT验签公钥状态
+ * 由启动模块实现（负责从认证服务获取、缓存和刷新公钥），WebSocket握手据此判断能否验签
+ *
+ * @author alcsyooterranf
+ * @version 1.0
+ * @since 2026-10-18
+ */
+public interface PublicKeyService {
+	
+	/**
+	 * 公钥是否已加载到JwtUtil
+	 *
+	 * @return true-已加载，false-未加载，此时无法验签
+	 */
+	boolean isKeyLoaded();
+	
+	/**
+	 * 请求尽快从认证服务刷新公钥（异步执行，有最小间隔限制）
+	 * 用于token验签失败时及时发现密钥轮换
+	 */
+	void requestRefresh();
+	
+}
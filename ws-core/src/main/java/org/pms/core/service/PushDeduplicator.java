@@ -0,0 +1,148 @@
+package org.pms.core.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 推送幂等去重
+ * 按（幂等key, userId）记录每个接收者的发送结果，调用方超时重试时只补发上次未送达的用户
+ * <p>
+ * 记录在时间窗口（ws.push.dedup.ttl）内有效，总记录数（即接收者数，不是key数）有上限（ws.push.dedup.max-entries），
+ * 超出时淘汰最早的记录，被淘汰的接收者在重试时会被再次推送
+ * <p>
+ * 每条记录是一次发送尝试的结果Future：
+ * 1. 未完成：另一请求正在发送，重试方等待其结果，失败则由重试方补发；整批接收者共用一个等待时限
+ * （ws.push.dedup.await-timeout，需小于调用方的读超时），超时仍未完成的接收者不重复发送，由重试方报告为未确认
+ * 2. 已完成：已送达，跳过；发送失败的记录会被立即移除
+ *
+ * @author alcsyooterranf
+ * @version 1.0
+ * @since 2026-10-18
+ */
+@Slf4j
+@Service
+public class PushDeduplicator {
+	
+	/**
+	 * 已送达记录共用的Future，避免每个接收者保留一个完成态对象
+	 */
+	private static final CompletableFuture<Boolean> DELIVERED = CompletableFuture.completedFuture(Boolean.TRUE);
+	
+	// 幂等记录有效期（毫秒），需大于调用方重试的总时长
+	@Value("${ws.push.dedup.ttl:600000}")
+	private long ttl;
+	
+	// 最多保留的接收者记录数，每条记录约100字节
+	@Value("${ws.push.dedup.max-entries:500000}")
+	private long maxEntries;
+	
+	// 重试方等待其他请求发送结果的最长时间（毫秒），整批共用
+	@Value("${ws.push.dedup.await-timeout:5000}")
+	private long awaitTimeout;
+	
+	private ConcurrentMap<Recipient, CompletableFuture<Boolean>> attempts;
+	
+	/**
+	 * 去重记录的key
+	 */
+	private record Recipient(String idempotencyKey, long userId) {
+	}
+	
+	@PostConstruct
+	public void init() {
+		Cache<Recipient, CompletableFuture<Boolean>> cache = CacheBuilder.newBuilder()
+				.expireAfterWrite(Duration.ofMillis(ttl))
+				.maximumSize(maxEntries)
+				.build();
+		attempts = cache.asMap();
+		log.info("推送幂等去重初始化: ttl={}ms, maxEntries={}, awaitTimeout={}ms", ttl, maxEntries, awaitTimeout);
+	}
+	
+	/**
+	 * 认领向用户发送的资格
+	 *
+	 * @param idempotencyKey 幂等key，为空时不去重
+	 * @param userId         用户ID
+	 * @return null-认领成功，调用方负责发送并在结束后调用complete；
+	 * 否则返回另一请求的发送结果：已完成表示已送达，未完成表示正在发送
+	 */
+	public CompletableFuture<Boolean> claim(String idempotencyKey, Long userId) {
+		if (StringUtils.isBlank(idempotencyKey) || userId == null) {
+			return null;
+		}
+		Recipient recipient = new Recipient(idempotencyKey, userId);
+		CompletableFuture<Boolean> attempt = new CompletableFuture<>();
+		while (true) {
+			CompletableFuture<Boolean> existing = attempts.putIfAbsent(recipient, attempt);
+			if (existing == null) {
+				return null;
+			}
+			if (!existing.isDone() || Boolean.TRUE.equals(existing.getNow(false))) {
+				return existing;
+			}
+			// 失败记录尚未移除，直接接管
+			if (attempts.replace(recipient, existing, attempt)) {
+				return null;
+			}
+		}
+	}
+	
+	/**
+	 * 记录认领后的发送结果，唤醒等待该结果的重试请求
+	 *
+	 * @param idempotencyKey 幂等key
+	 * @param userId         用户ID
+	 * @param delivered      是否送达，未送达时移除记录以便补发
+	 */
+	public void complete(String idempotencyKey, Long userId, boolean delivered) {
+		if (StringUtils.isBlank(idempotencyKey) || userId == null) {
+			return;
+		}
+		Recipient recipient = new Recipient(idempotencyKey, userId);
+		CompletableFuture<Boolean> attempt = attempts.get(recipient);
+		if (attempt == null || attempt.isDone()) {
+			return;
+		}
+		attempt.complete(delivered);
+		if (delivered) {
+			attempts.replace(recipient, attempt, DELIVERED);
+		} else {
+			attempts.remove(recipient, attempt);
+		}
+	}
+	
+	/**
+	 * 等待其他请求的发送结果，全部完成或达到等待时限时返回
+	 * 返回后调用方逐个检查：已完成为true表示已送达，为false表示发送失败应重新认领补发，未完成表示结果未确认
+	 *
+	 * @param others claim返回的未完成结果
+	 */
+	public void awaitAll(Collection<CompletableFuture<Boolean>> others) {
+		if (others.isEmpty()) {
+			return;
+		}
+		try {
+			CompletableFuture.allOf(others.toArray(new CompletableFuture<?>[0])).get(awaitTimeout, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			log.warn("等待其他请求推送结果超时: 等待数={}, timeout={}ms", others.size(), awaitTimeout);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			// 发送结果只以true/false完成，不会异常完成
+		}
+	}
+	
+}
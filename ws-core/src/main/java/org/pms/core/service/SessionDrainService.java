@@ -0,0 +1,292 @@
+package org.pms.core.service;
+
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.pms.core.handler.NonBlockingWebSocketSession;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * WebSocket会话排空服务
+ * 节点下线（应用关闭或管理接口触发）时：
+ * 1. 停止接收新会话
+ * 2. 将现有会话打散后分批关闭，每批关闭前先等待会话发送缓冲区刷完
+ * 3. 关闭原因中携带随机的重连延迟（reconnectDelay=毫秒），客户端据此错峰重连到其他节点
+ * 4. 分批结束后再扫描残留会话（排空开始前已通过检查、之后才登记的会话），直到全部关闭
+ * 管理接口触发的排空可以取消，取消后恢复接收新会话，已关闭的会话由客户端自行重连；
+ * 取消后排空线程在关闭下一个会话前退出，再次排空会先等待其退出，不会有两个排空线程同时运行
+ *
+ * @author alcsyooterranf
+ * @version 1.0
+ * @since 2026-10-18
+ */
+@Slf4j
+@Service
+public class SessionDrainService implements SmartLifecycle {
+	
+	/**
+	 * 关闭原因前缀，客户端解析其后的毫秒数作为重连延迟
+	 */
+	public static final String RECONNECT_DELAY_REASON_PREFIX = "reconnectDelay=";
+	
+	@Resource
+	private WebSocketSessionManager sessionManager;
+	
+	// 排空分批数量
+	@Value("${ws.drain.waves:10}")
+	private int waves;
+	
+	// 排空总时长（毫秒），各批次在此时长内均匀分布
+	@Value("${ws.drain.duration:20000}")
+	private long duration;
+	
+	// 每批关闭前等待发送缓冲区刷完的最长时间（毫秒）
+	@Value("${ws.drain.flush-timeout:2000}")
+	private long flushTimeout;
+	
+	// 下发给客户端的最大重连延迟（毫秒）
+	@Value("${ws.drain.max-reconnect-delay:30000}")
+	private long maxReconnectDelay;
+	
+	private volatile boolean draining = false;
+	
+	private volatile boolean running = false;
+	
+	private CompletableFuture<Void> drainFuture;
+	
+	private Thread drainThread;
+	
+	// 已取消但可能尚未退出的排空线程
+	private Thread cancelledThread;
+	
+	/**
+	 * 残留会话扫描的最多轮数
+	 */
+	private static final int MAX_SWEEP_ROUNDS = 3;
+	
+	/**
+	 * 是否处于排空状态，排空期间拒绝新会话
+	 *
+	 * @return true-排空中，false-正常
+	 */
+	public boolean isDraining() {
+		return draining;
+	}
+	
+	/**
+	 * 生成随机重连延迟对应的关闭状态
+	 *
+	 * @return 带重连延迟的关闭状态
+	 */
+	public CloseStatus reconnectCloseStatus() {
+		long delay = ThreadLocalRandom.current().nextLong(maxReconnectDelay + 1);
+		return CloseStatus.SERVICE_RESTARTED.withReason(RECONNECT_DELAY_REASON_PREFIX + delay);
+	}
+	
+	/**
+	 * 开始排空，重复调用返回同一个排空任务
+	 *
+	 * @return 排空任务
+	 */
+	public synchronized CompletableFuture<Void> startDrain() {
+		if (drainFuture == null) {
+			awaitCancelledThread();
+			draining = true;
+			CompletableFuture<Void> future = new CompletableFuture<>();
+			drainFuture = future;
+			drainThread = new Thread(() -> {
+				try {
+					drainSessions();
+					future.complete(null);
+				} catch (InterruptedException e) {
+					log.info("WebSocket会话排空已取消");
+					future.complete(null);
+				} catch (Throwable e) {
+					log.error("WebSocket会话排空失败: error={}", e.getMessage(), e);
+					future.completeExceptionally(e);
+				}
+			}, "ws-drain");
+			drainThread.setDaemon(true);
+			drainThread.start();
+		}
+		return drainFuture;
+	}
+	
+	/**
+	 * 取消排空，恢复接收新会话
+	 * 应用关闭过程中不允许取消
+	 *
+	 * @return true-已取消，false-当前未在排空或应用正在关闭
+	 */
+	public synchronized boolean cancelDrain() {
+		if (drainFuture == null || !running) {
+			return false;
+		}
+		draining = false;
+		drainThread.interrupt();
+		cancelledThread = drainThread;
+		drainThread = null;
+		drainFuture = null;
+		log.info("取消WebSocket会话排空，恢复接收新会话");
+		return true;
+	}
+	
+	/**
+	 * 等待上一次被取消的排空线程退出，它最多还会完成正在进行的一次会话关闭
+	 */
+	private void awaitCancelledThread() {
+		if (cancelledThread == null) {
+			return;
+		}
+		try {
+			cancelledThread.join();
+			cancelledThread = null;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			log.warn("等待已取消的排空线程退出被中断");
+		}
+	}
+	
+	@Override
+	public void start() {
+		running = true;
+	}
+	
+	/**
+	 * 应用关闭时排空会话，阶段为DEFAULT_PHASE，先于Web服务器停止执行
+	 */
+	@Override
+	public void stop() {
+		CompletableFuture<Void> future;
+		synchronized (this) {
+			// 先置为非运行状态，关闭过程中的排空不可被取消
+			running = false;
+			future = startDrain();
+		}
+		try {
+			future.join();
+		} catch (Exception e) {
+			log.error("关闭时排空WebSocket会话失败: error={}", e.getMessage());
+		}
+	}
+	
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+	
+	@Override
+	public int getPhase() {
+		return SmartLifecycle.DEFAULT_PHASE;
+	}
+	
+	/**
+	 * 分批关闭当前全部会话
+	 */
+	private void drainSessions() throws InterruptedException {
+		closeInWaves();
+		sweepRemaining();
+		log.info("WebSocket会话排空完成");
+	}
+	
+	/**
+	 * 将排空开始时的会话打散后分批关闭
+	 */
+	private void closeInWaves() throws InterruptedException {
+		List<WebSocketSessionManager.SessionInfo> sessions = new ArrayList<>(sessionManager.getAllSessions());
+		Collections.shuffle(sessions);
+		
+		int waveCount = Math.max(1, Math.min(waves, sessions.size()));
+		int waveSize = (sessions.size() + waveCount - 1) / waveCount;
+		long waveInterval = duration / waveCount;
+		log.info("开始排空WebSocket会话: 会话数={}, 批次数={}, 批次间隔={}ms", sessions.size(), waveCount, waveInterval);
+		
+		for (int i = 0; i < sessions.size(); i += waveSize) {
+			if (i > 0) {
+				Thread.sleep(waveInterval);
+			}
+			List<WebSocketSessionManager.SessionInfo> wave = sessions.subList(i, Math.min(i + waveSize, sessions.size()));
+			awaitFlush(wave);
+			for (WebSocketSessionManager.SessionInfo sessionInfo : wave) {
+				checkCancelled();
+				closeSession(sessionInfo);
+			}
+			log.info("WebSocket会话排空进度: 已关闭={}, 总数={}", Math.min(i + waveSize, sessions.size()), sessions.size());
+		}
+	}
+	
+	/**
+	 * 关闭排空开始后才登记的残留会话，直到在线数为0或达到最多扫描轮数
+	 */
+	private void sweepRemaining() throws InterruptedException {
+		for (int round = 0; round < MAX_SWEEP_ROUNDS && sessionManager.getOnlineCount() > 0; round++) {
+			List<WebSocketSessionManager.SessionInfo> remaining = new ArrayList<>(sessionManager.getAllSessions());
+			log.info("关闭残留WebSocket会话: 会话数={}, 轮次={}", remaining.size(), round + 1);
+			awaitFlush(remaining);
+			for (WebSocketSessionManager.SessionInfo sessionInfo : remaining) {
+				checkCancelled();
+				closeSession(sessionInfo);
+			}
+			// 等待关闭回调移除会话
+			Thread.sleep(100);
+		}
+	}
+	
+	/**
+	 * 等待一批会话的发送缓冲区刷完，最多等待flushTimeout
+	 */
+	private void awaitFlush(List<WebSocketSessionManager.SessionInfo> wave) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + flushTimeout;
+		while (System.currentTimeMillis() < deadline) {
+			boolean flushed = wave.stream().allMatch(sessionInfo -> isFlushed(sessionInfo.getSession()));
+			if (flushed) {
+				return;
+			}
+			Thread.sleep(20);
+		}
+		log.warn("等待发送缓冲区刷新超时, 继续关闭会话: timeout={}ms", flushTimeout);
+	}
+	
+	/**
+	 * 排空被取消（线程被中断）时立即停止关闭会话
+	 */
+	private void checkCancelled() throws InterruptedException {
+		if (Thread.currentThread().isInterrupted()) {
+			throw new InterruptedException();
+		}
+	}
+	
+	private boolean isFlushed(WebSocketSession session) {
+		if (session instanceof NonBlockingWebSocketSession nonBlocking) {
+			return !session.isOpen() || nonBlocking.getPendingMessageCount() == 0;
+		}
+		if (session instanceof ConcurrentWebSocketSessionDecorator decorator) {
+			return !session.isOpen() || (decorator.getBufferSize() == 0 && decorator.getTimeSinceSendStarted() == 0);
+		}
+		return true;
+	}
+	
+	private void closeSession(WebSocketSessionManager.SessionInfo sessionInfo) {
+		WebSocketSession session = sessionInfo.getSession();
+		if (!session.isOpen()) {
+			return;
+		}
+		try {
+			session.close(reconnectCloseStatus());
+		} catch (Exception e) {
+			log.error("排空关闭会话失败: userId={}, sessionId={}, error={}",
+					sessionInfo.getUserId(), session.getId(), e.getMessage());
+		}
+	}
+	
+}
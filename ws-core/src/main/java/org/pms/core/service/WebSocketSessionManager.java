@@ -1,11 +1,13 @@
 package org.pms.core.service;
 
+import jakarta.annotation.Resource;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
+import org.pms.core.filter.AlertFilter;
 import org.springframework.stereotype.Service;
 import org.springframework.web.socket.WebSocketSession;
 
-import java.util.Collection;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -28,66 +30,125 @@ public class WebSocketSessionManager {
     public static class SessionInfo {
         private Long userId;
         private String username;
+        private Set<String> roles;
+        private Map<String, String> attributes;
         private WebSocketSession session;
         private Long connectTime;
+        // 订阅过滤器，为null时接收全部广播
+        private volatile AlertFilter filter;
 
-        public SessionInfo(Long userId, String username, WebSocketSession session) {
+        public SessionInfo(Long userId, String username, Set<String> roles, Map<String, String> attributes,
+                           WebSocketSession session) {
             this.userId = userId;
             this.username = username;
+            this.roles = roles != null ? Set.copyOf(roles) : Set.of();
+            this.attributes = attributes != null ? Map.copyOf(attributes) : Map.of();
             this.session = session;
             this.connectTime = System.currentTimeMillis();
         }
+
+        /**
+         * 该会话所属的全部受众key（角色 + 属性）
+         */
+        public Set<String> getAudienceKeys() {
+            Set<String> keys = new HashSet<>(roles);
+            attributes.forEach((name, value) -> keys.add(attributeAudience(name, value)));
+            return keys;
+        }
     }
 
+    @Resource
+    private PresenceEventLog presenceEventLog;
+
     // key: sessionId, value: SessionInfo
     private final ConcurrentHashMap<String, SessionInfo> sessionMap = new ConcurrentHashMap<>();
 
     // key: userId, value: sessionId（用于根据userId查找session）
     private final ConcurrentHashMap<Long, String> userSessionMap = new ConcurrentHashMap<>();
 
+    // key: 受众key（角色如ROLE_admin，或属性如district=east），value: sessionId集合
+    // 角色来自已校验的token；属性由客户端自行声明，只能用于非敏感的定向
+    // 在会话增删时增量维护，定向广播时直接取受众集合，无需遍历全部会话
+    private final ConcurrentHashMap<String, Set<String>> audienceIndex = new ConcurrentHashMap<>();
+
+    /**
+     * 构造属性受众key
+     *
+     * @param name  属性名
+     * @param value 属性值
+     * @return 受众key，格式为 name=value
+     */
+    public static String attributeAudience(String name, String value) {
+        return name + "=" + value;
+    }
+
     /**
      * 添加会话
      *
-     * @param userId   用户ID
-     * @param username 用户名
-     * @param session  WebSocket会话
+     * @param userId     用户ID
+     * @param username   用户名
+     * @param roles      用户角色（如ROLE_admin）
+     * @param attributes 会话属性（如district、clientType），由客户端握手时自行声明，未经token校验
+     * @param session    WebSocket会话
      */
-    public void addSession(Long userId, String username, WebSocketSession session) {
+    public void addSession(Long userId, String username, Set<String> roles, Map<String, String> attributes,
+                           WebSocketSession session) {
         String sessionId = session.getId();
 
-        // 如果用户已经有连接，先关闭旧连接
-        String oldSessionId = userSessionMap.get(userId);
-        if (oldSessionId != null) {
-            SessionInfo oldSessionInfo = sessionMap.get(oldSessionId);
-            if (oldSessionInfo != null && oldSessionInfo.getSession().isOpen()) {
-                try {
-                    log.info("用户{}已有连接，关闭旧连接: oldSessionId={}", username, oldSessionId);
-                    oldSessionInfo.getSession().close();
-                } catch (Exception e) {
-                    log.error("关闭旧连接失败: sessionId={}, error={}", oldSessionId, e.getMessage());
+        // 添加新连接
+        SessionInfo sessionInfo = new SessionInfo(userId, username, roles, attributes, session);
+        sessionMap.put(sessionId, sessionInfo);
+        indexAudience(sessionId, sessionInfo);
+
+        // 在userSessionMap的原子更新内判断状态变更，与并发的removeSession对同一用户串行执行
+        // 替换旧连接时用户一直在线，不记录状态变更
+        String[] replaced = new String[1];
+        userSessionMap.compute(userId, (id, oldSessionId) -> {
+            replaced[0] = oldSessionId;
+            if (oldSessionId == null) {
+                presenceEventLog.record(userId, true);
+            }
+            return sessionId;
+        });
+
+        // 如果用户已经有连接，关闭旧连接
+        String oldSessionId = replaced[0];
+        if (oldSessionId != null && !oldSessionId.equals(sessionId)) {
+            SessionInfo oldSessionInfo = sessionMap.remove(oldSessionId);
+            if (oldSessionInfo != null) {
+                unindexAudience(oldSessionId, oldSessionInfo);
+                if (oldSessionInfo.getSession().isOpen()) {
+                    try {
+                        log.info("用户{}已有连接，关闭旧连接: oldSessionId={}", username, oldSessionId);
+                        oldSessionInfo.getSession().close();
+                    } catch (Exception e) {
+                        log.error("关闭旧连接失败: sessionId={}, error={}", oldSessionId, e.getMessage());
+                    }
                 }
             }
-            sessionMap.remove(oldSessionId);
         }
 
-        // 添加新连接
-        SessionInfo sessionInfo = new SessionInfo(userId, username, session);
-        sessionMap.put(sessionId, sessionInfo);
-        userSessionMap.put(userId, sessionId);
-
         log.info("添加WebSocket会话: userId={}, username={}, sessionId={}, 当前在线人数={}",
                 userId, username, sessionId, sessionMap.size());
     }
 
     /**
      * 移除会话
+     * 只有该会话仍是用户的当前连接时才移除用户映射并记录下线，被新连接替换的旧会话关闭时不影响在线状态
      *
      * @param sessionId 会话ID
      */
     public void removeSession(String sessionId) {
         SessionInfo sessionInfo = sessionMap.remove(sessionId);
         if (sessionInfo != null) {
-            userSessionMap.remove(sessionInfo.getUserId());
+            unindexAudience(sessionId, sessionInfo);
+            userSessionMap.computeIfPresent(sessionInfo.getUserId(), (userId, currentSessionId) -> {
+                if (!currentSessionId.equals(sessionId)) {
+                    return currentSessionId;
+                }
+                presenceEventLog.record(userId, false);
+                return null;
+            });
             log.info("移除WebSocket会话: userId={}, username={}, sessionId={}, 当前在线人数={}",
                     sessionInfo.getUserId(), sessionInfo.getUsername(), sessionId, sessionMap.size());
         }
@@ -127,6 +188,34 @@ public class WebSocketSessionManager {
         return sessionMap.values();
     }
 
+    /**
+     * 获取受众会话（多个受众取并集）
+     * 只访问命中受众集合中的会话，开销与受众规模成正比
+     *
+     * @param audiences 受众key，如ROLE_admin、district=east
+     * @return 命中的会话信息
+     */
+    public Collection<SessionInfo> getAudienceSessions(String... audiences) {
+        if (audiences == null) {
+            return List.of();
+        }
+        Set<String> sessionIds = new HashSet<>();
+        for (String audience : audiences) {
+            Set<String> ids = audienceIndex.get(audience);
+            if (ids != null) {
+                sessionIds.addAll(ids);
+            }
+        }
+        List<SessionInfo> sessions = new ArrayList<>(sessionIds.size());
+        for (String sessionId : sessionIds) {
+            SessionInfo sessionInfo = sessionMap.get(sessionId);
+            if (sessionInfo != null) {
+                sessions.add(sessionInfo);
+            }
+        }
+        return sessions;
+    }
+
     /**
      * 获取在线用户数
      *
@@ -150,5 +239,29 @@ public class WebSocketSessionManager {
         SessionInfo sessionInfo = sessionMap.get(sessionId);
         return sessionInfo != null && sessionInfo.getSession().isOpen();
     }
-}
 
+    /**
+     * 将会话加入其所属的受众集合
+     */
+    private void indexAudience(String sessionId, SessionInfo sessionInfo) {
+        for (String audience : sessionInfo.getAudienceKeys()) {
+            audienceIndex.compute(audience, (key, ids) -> {
+                Set<String> target = ids != null ? ids : ConcurrentHashMap.newKeySet();
+                target.add(sessionId);
+                return target;
+            });
+        }
+    }
+
+    /**
+     * 将会话从其所属的受众集合中移除，集合为空时一并清理
+     */
+    private void unindexAudience(String sessionId, SessionInfo sessionInfo) {
+        for (String audience : sessionInfo.getAudienceKeys()) {
+            audienceIndex.computeIfPresent(audience, (key, ids) -> {
+                ids.remove(sessionId);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package org.pms.core.filter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * AlertFilterCompiler单元测试
+ *
+ * @author alcsyooterranf
+ * @version 1.0
+ * @since 2026-10-18
+ */
+class AlertFilterCompilerTest {
+	
+	private final AlertFilterCompiler compiler = new AlertFilterCompiler();
+	
+	private static final Map<String, Object> ALERT = Map.of(
+			"pressure", 0.25,
+			"district", "east",
+			"severity", "ERROR",
+			"device", Map.of("name", "a && b and c")
+	);
+	
+	// ---------- 拆分 ----------
+	
+	@Test
+	void splitsOnDoubleAmpersandAndKeyword() {
+		AlertFilter filter = compiler.compile("pressure < 0.3 && district == 'east' and severity >= WARN");
+		assertEquals(3, filter.getExpression().split(" && ").length);
+		assertTrue(filter.test(ALERT));
+	}
+	
+	@Test
+	void andKeywordIsCaseInsensitive() {
+		assertSame(compiler.compile("pressure < 0.3 && district == 'east'"),
+				compiler.compile("pressure < 0.3 AND district == 'east'"));
+	}
+	
+	@Test
+	void doesNotSplitInsideQuotes() {
+		AlertFilter single = compiler.compile("device.name == 'a && b and c'");
+		assertEquals("device.name == 'a && b and c'", single.getExpression());
+		assertTrue(single.test(ALERT));
+		
+		AlertFilter doubleQuoted = compiler.compile("device.name == \"a && b and c\" && district == east");
+		assertTrue(doubleQuoted.test(ALERT));
+	}
+	
+	@Test
+	void andInsideFieldValueWithoutSpacesIsNotAKeyword() {
+		AlertFilter filter = compiler.compile("district == eastandwest");
+		assertEquals("district == 'eastandwest'", filter.getExpression());
+	}
+	
+	@Test
+	void rejectsUnclosedQuote() {
+		assertThrows(IllegalArgumentException.class, () -> compiler.compile("district == 'east"));
+		assertThrows(IllegalArgumentException.class, () -> compiler.compile("district == \"east && pressure < 1"));
+	}
+	
+	@Test
+	void rejectsMalformedInput() {
+		assertThrows(IllegalArgumentException.class, () -> compiler.compile(" "));
+		assertThrows(IllegalArgumentException.class, () -> compiler.compile("pressure ~ 1"));
+		assertThrows(IllegalArgumentException.class, () -> compiler.compile("pressure < 1 &&"));
+		assertThrows(IllegalArgumentException.class, () -> compiler.compile("severity >= FATAL"));
+	}
+	
+	// ---------- 规范化 ----------
+	
+	@Test
+	void clauseOrderDoesNotMatter() {
+		assertSame(compiler.compile("pressure < 0.3 && district == 'east'"),
+				compiler.compile("district == 'east' && pressure < 0.3"));
+	}
+	
+	@Test
+	void equivalentNumbersShareFilter() {
+		assertSame(compiler.compile("pressure < 0.30"), compiler.compile("pressure < 0.3"));
+		assertSame(compiler.compile("pressure = 1"), compiler.compile("pressure == 1.0"));
+	}
+	
+	@Test
+	void severityLiteralsShareFilter() {
+		AlertFilter bare = compiler.compile("severity >= WARN");
+		assertSame(bare, compiler.compile("severity >= 'warn'"));
+		assertSame(bare, compiler.compile("severity >= \"Warn\""));
+		assertEquals("severity >= WARN", bare.getExpression());
+	}
+	
+	@Test
+	void quotedNumberIsComparedAsString() {
+		AlertFilter quoted = compiler.compile("district == '1'");
+		assertEquals("district == '1'", quoted.getExpression());
+		assertFalse(quoted.test(Map.of("district", "1.0")));
+		assertTrue(compiler.compile("district == 1").test(Map.of("district", "1.0")));
+	}
+	
+	// ---------- 字段缺失 ----------
+	
+	@Test
+	void missingFieldOnlySatisfiesNotEquals() {
+		Map<String, Object> empty = Map.of();
+		for (String op : List.of("==", "<", "<=", ">", ">=")) {
+			assertFalse(compiler.compile("pressure " + op + " 1").test(empty), "number " + op);
+			assertFalse(compiler.compile("district " + op + " 'east'").test(empty), "string " + op);
+			assertFalse(compiler.compile("severity " + op + " WARN").test(empty), "severity " + op);
+		}
+		assertTrue(compiler.compile("pressure != 1").test(empty));
+		assertTrue(compiler.compile("district != 'east'").test(empty));
+		assertTrue(compiler.compile("severity != WARN").test(empty));
+	}
+	
+	@Test
+	void missingNestedFieldOnlySatisfiesNotEquals() {
+		Map<String, Object> flat = Map.of("device", "plain");
+		assertFalse(compiler.compile("device.name == 'x'").test(flat));
+		assertTrue(compiler.compile("device.name != 'x'").test(flat));
+	}
+	
+	@Test
+	void nonNumericValueForNumberClauseCountsAsMissing() {
+		Map<String, Object> alert = Map.of("pressure", "n/a");
+		assertFalse(compiler.compile("pressure < 1").test(alert));
+		assertTrue(compiler.compile("pressure != 1").test(alert));
+		assertTrue(compiler.compile("pressure < 1").test(Map.of("pressure", " 0.5 ")));
+	}
+	
+	// ---------- severity ----------
+	
+	@Test
+	void severityComparesByLevel() {
+		AlertFilter atLeastWarn = compiler.compile("severity >= WARN");
+		assertFalse(atLeastWarn.test(Map.of("severity", "INFO")));
+		assertTrue(atLeastWarn.test(Map.of("severity", "WARN")));
+		assertTrue(atLeastWarn.test(Map.of("severity", "error")));
+		assertTrue(atLeastWarn.test(Map.of("severity", "CRITICAL")));
+		
+		AlertFilter belowError = compiler.compile("severity < ERROR");
+		assertTrue(belowError.test(Map.of("severity", "WARN")));
+		assertFalse(belowError.test(Map.of("severity", "ERROR")));
+	}
+	
+	@Test
+	void unknownSeverityCountsAsMissing() {
+		Map<String, Object> alert = Map.of("severity", "FATAL");
+		assertFalse(compiler.compile("severity >= INFO").test(alert));
+		assertFalse(compiler.compile("severity == WARN").test(alert));
+		assertTrue(compiler.compile("severity != WARN").test(alert));
+	}
+	
+	// ---------- 共享求值 ----------
+	
+	@Test
+	void selectEvaluatesEachDistinctFilterOnce() {
+		AtomicInteger eastCalls = new AtomicInteger();
+		AtomicInteger westCalls = new AtomicInteger();
+		AlertFilter east = new AlertFilter("district == 'east'", alert -> {
+			eastCalls.incrementAndGet();
+			return "east".equals(alert.get("district"));
+		});
+		AlertFilter west = new AlertFilter("district == 'west'", alert -> {
+			westCalls.incrementAndGet();
+			return "west".equals(alert.get("district"));
+		});
+		// 与east表达式相同的另一个实例，按表达式视为同一过滤器
+		AlertFilter eastCopy = new AlertFilter("district == 'east'", alert -> {
+			throw new AssertionError("相同表达式的过滤器不应再次求值");
+		});
+		
+		Map<String, AlertFilter> subscribers = new LinkedHashMap<>();
+		subscribers.put("u1", east);
+		subscribers.put("u2", west);
+		subscribers.put("u3", east);
+		subscribers.put("u4", eastCopy);
+		subscribers.put("u5", west);
+		subscribers.put("u6", null);
+		
+		List<String> recipients = AlertFilters.select(subscribers.keySet(), subscribers::get, ALERT);
+		
+		assertEquals(List.of("u1", "u3", "u4", "u6"), recipients);
+		assertEquals(1, eastCalls.get());
+		assertEquals(1, westCalls.get());
+	}
+	
+}
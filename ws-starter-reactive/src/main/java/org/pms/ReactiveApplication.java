@@ -0,0 +1,27 @@
+package org.pms;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.cloud.openfeign.EnableFeignClients;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * WebSocket服务启动类（Reactor Netty运行时）
+ *
+ * @author alcsyooterranf
+ * @version 1.0
+ * @since 2026-10-18
+ */
+@Slf4j
+@SpringBootApplication
+@EnableFeignClients(basePackages = "org.pms.trigger.feign")
+@EnableScheduling
+public class ReactiveApplication {
+
+	public static void main(String[] args) {
+		SpringApplication.run(ReactiveApplication.class, args);
+		log.info("WebSocket服务(Reactor Netty)启动成功！");
+	}
+
+}
@@ -0,0 +1,33 @@
+package org.pms.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+
+/**
+ * Spring Security配置（WebFlux）
+ * 与ws-starter的SecurityConfig一致：REST接口是内部RPC接口，允许匿名访问
+ * WebSocket连接通过JWT token验证，在WebSocketHandler中处理
+ *
+ * @author alcsyooterranf
+ * @version 1.0
+ * @since 2026-10-18
+ */
+@Configuration
+@EnableWebFluxSecurity
+public class ReactiveSecurityConfig {
+
+    @Bean
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http) {
+        return http
+                // 禁用CSRF（因为是内部RPC服务）
+                .csrf(ServerHttpSecurity.CsrfSpec::disable)
+                // 允许所有请求匿名访问
+                .authorizeExchange(exchange -> exchange
+                        .anyExchange().permitAll()
+                )
+                .build();
+    }
+}
@@ -0,0 +1,71 @@
+package org.pms.config;
+
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.pms.handler.ReactiveAlertWebSocketHandler;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.http.HttpMessageConverters;
+import org.springframework.boot.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.reactive.config.BlockingExecutionConfigurer;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+import org.springframework.web.reactive.handler.SimpleUrlHandlerMapping;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Map;
+
+/**
+ * WebSocket配置类（WebFlux）
+ * 注册WebSocket处理器和路径，路径与ws-starter保持一致
+ * ws-trigger的RPC接口是阻塞式的（推送扇出、幂等等待），将其调度到独立线程执行，不占用Reactor Netty事件循环
+ *
+ * @author alcsyooterranf
+ * @version 1.0
+ * @since 2026-10-18
+ */
+@Slf4j
+@Configuration
+public class ReactiveWebSocketConfig implements WebFluxConfigurer {
+
+    @Resource
+    private Environment environment;
+
+    /**
+     * Spring Boot自动配置的任务执行器，虚拟线程模式下为虚拟线程执行器
+     */
+    @Resource(name = "applicationTaskExecutor")
+    private AsyncTaskExecutor taskExecutor;
+
+    @Bean
+    public HandlerMapping webSocketHandlerMapping(ReactiveAlertWebSocketHandler reactiveAlertWebSocketHandler) {
+        log.info("WebSocket handler registered(reactive): /ws/alert");
+        return new SimpleUrlHandlerMapping(Map.of("/ws/alert", reactiveAlertWebSocketHandler), -1);
+    }
+
+    /**
+     * 返回值不是响应式类型的控制器方法（即ws-trigger的RPC接口）不在事件循环上执行：
+     * 虚拟线程模式下交给虚拟线程执行器，否则交给Reactor的boundedElastic调度器
+     */
+    @Override
+    public void configureBlockingExecution(BlockingExecutionConfigurer configurer) {
+        boolean virtualThreads = Threading.VIRTUAL.isActive(environment);
+        configurer.setExecutor(virtualThreads
+                ? taskExecutor
+                : new TaskExecutorAdapter(task -> Schedulers.boundedElastic().schedule(task)));
+        log.info("阻塞式控制器方法执行线程: {}", virtualThreads ? "virtual" : "boundedElastic");
+    }
+
+    /**
+     * reactive应用不会自动配置HttpMessageConverters，Feign解码依赖该Bean
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public HttpMessageConverters httpMessageConverters() {
+        return new HttpMessageConverters();
+    }
+}
@@ -0,0 +1,69 @@
+package org.pms.handler;
+
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.pms.core.handler.AlertWebSocketHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.socket.WebSocketHandler;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import reactor.core.publisher.Mono;
+
+/**
+ * 告警WebSocket处理器（Reactor Netty）
+ * 将连接生命周期转交给ws-core的AlertWebSocketHandler，鉴权、会话管理、消息处理逻辑与servlet运行时一致
+ *
+ * @author alcsyooterranf
+ * @version 1.0
+ * @since 2026-10-18
+ */
+@Slf4j
+@Component
+public class ReactiveAlertWebSocketHandler implements WebSocketHandler {
+	
+	@Resource
+	private AlertWebSocketHandler alertWebSocketHandler;
+	
+	@Override
+	public Mono<Void> handle(WebSocketSession session) {
+		ReactiveSessionAdapter adapter = new ReactiveSessionAdapter(session);
+		
+		// 出站流写完后再关闭连接，保证关闭前已入队的消息（如排空前的告警）全部发出
+		Mono<Void> output = session.send(adapter.outbound().map(session::textMessage))
+				.then(Mono.defer(adapter::closeDelegate));
+		Mono<Void> input = session.receive()
+				.doOnNext(message -> onMessage(adapter, message.getPayloadAsText()))
+				.doFinally(signal -> adapter.inboundTerminated())
+				.then();
+		
+		return Mono.fromRunnable(() -> onOpen(adapter))
+				.then(Mono.when(input, output))
+				.doFinally(signal -> onClose(adapter));
+	}
+	
+	private void onOpen(ReactiveSessionAdapter adapter) {
+		try {
+			alertWebSocketHandler.afterConnectionEstablished(adapter);
+		} catch (Exception e) {
+			log.error("WebSocket连接建立失败: sessionId={}, error={}", adapter.getId(), e.getMessage(), e);
+		}
+	}
+	
+	private void onMessage(ReactiveSessionAdapter adapter, String payload) {
+		try {
+			alertWebSocketHandler.handleMessage(adapter, new TextMessage(payload));
+		} catch (Exception e) {
+			log.error("处理WebSocket消息失败: sessionId={}, error={}", adapter.getId(), e.getMessage(), e);
+		}
+	}
+	
+	private void onClose(ReactiveSessionAdapter adapter) {
+		try {
+			alertWebSocketHandler.afterConnectionClosed(adapter, CloseStatus.NORMAL);
+		} catch (Exception e) {
+			log.error("WebSocket连接关闭处理失败: sessionId={}, error={}", adapter.getId(), e.getMessage(), e);
+		}
+	}
+	
+}
@@ -0,0 +1,241 @@
+package org.pms.handler;
+
+import org.pms.core.handler.NonBlockingWebSocketSession;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketMessage;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * 将Reactor Netty会话适配为ws-core使用的WebSocketSession
+ * 使ws-core的会话管理、排空和ws-trigger的推送接口无需区分运行时
+ * 发送只写入出站队列，不阻塞调用线程；队列按需增长，待发送消息超过上限时按发送失败处理
+ * 关闭时先结束出站流，队列中的消息写完后再关闭连接（超时则强制关闭）
+ * 出站流结束前先标记为已关闭，之后的发送一律按失败处理，不会被静默丢弃
+ *
+ * @author alcsyooterranf
+ * @version 1.0
+ * @since 2026-10-18
+ */
+public class ReactiveSessionAdapter implements NonBlockingWebSocketSession {
+	
+	/**
+	 * 单连接最多待发送消息数
+	 */
+	private static final int MAX_PENDING_MESSAGES = 256;
+	
+	/**
+	 * 关闭时等待出站队列写完的最长时间，超时强制关闭
+	 */
+	private static final Duration CLOSE_TIMEOUT = Duration.ofSeconds(5);
+	
+	/**
+	 * 待发送消息计数，使用字段更新器避免每个连接额外分配原子对象
+	 */
+	private static final AtomicIntegerFieldUpdater<ReactiveSessionAdapter> PENDING =
+			AtomicIntegerFieldUpdater.newUpdater(ReactiveSessionAdapter.class, "pending");
+	
+	private static final AtomicReferenceFieldUpdater<ReactiveSessionAdapter, CloseStatus> CLOSE_STATUS =
+			AtomicReferenceFieldUpdater.newUpdater(ReactiveSessionAdapter.class, CloseStatus.class, "closeStatus");
+	
+	/**
+	 * 并发写入出站队列时的最长自旋时间
+	 */
+	private static final Duration EMIT_BUSY_LOOPING = Duration.ofMillis(100);
+	
+	private final org.springframework.web.reactive.socket.WebSocketSession delegate;
+	
+	// 分段链表队列，初始只分配一个小分段，积压时再增长
+	private final Sinks.Many<String> outbound = Sinks.many().unicast()
+			.onBackpressureBuffer(Queues.<String>unbounded(Queues.XS_BUFFER_SIZE).get());
+	
+	private volatile int pending;
+	
+	// 非null表示已请求关闭，出站队列写完后按该状态关闭连接
+	private volatile CloseStatus closeStatus;
+	
+	// 出站流已结束或正在结束，不再接受新消息
+	private volatile boolean closed;
+	
+	private int textMessageSizeLimit = 8 * 1024;
+	
+	private int binaryMessageSizeLimit = 8 * 1024;
+	
+	public ReactiveSessionAdapter(org.springframework.web.reactive.socket.WebSocketSession delegate) {
+		this.delegate = delegate;
+	}
+	
+	/**
+	 * 出站消息流，由ReactiveAlertWebSocketHandler订阅并写入连接
+	 */
+	public Flux<String> outbound() {
+		return outbound.asFlux().doOnNext(payload -> PENDING.decrementAndGet(this));
+	}
+	
+	/**
+	 * 出站流结束后关闭连接，由ReactiveAlertWebSocketHandler在出站流完成后调用
+	 * 未请求关闭（客户端主动断开）时不做处理
+	 */
+	public Mono<Void> closeDelegate() {
+		CloseStatus status = closeStatus;
+		if (status == null || !delegate.isOpen()) {
+			return Mono.empty();
+		}
+		return delegate.close(new org.springframework.web.reactive.socket.CloseStatus(status.getCode(), status.getReason()));
+	}
+	
+	@Override
+	public int getPendingMessageCount() {
+		return pending;
+	}
+	
+	/**
+	 * 入站流结束（客户端断开）时调用，结束出站消息流
+	 */
+	public void inboundTerminated() {
+		completeOutbound();
+	}
+	
+	/**
+	 * 先标记为已关闭再结束出站消息流
+	 * 与并发发送冲突时自旋重试；仍失败时由close中的超时强制关闭兜底
+	 */
+	private void completeOutbound() {
+		closed = true;
+		try {
+			outbound.emitComplete(Sinks.EmitFailureHandler.busyLooping(EMIT_BUSY_LOOPING));
+		} catch (Sinks.EmissionException e) {
+			// 出站流未能结束，连接由超时强制关闭
+		}
+	}
+	
+	@Override
+	public String getId() {
+		return delegate.getId();
+	}
+	
+	@Override
+	public URI getUri() {
+		return delegate.getHandshakeInfo().getUri();
+	}
+	
+	@Override
+	public HttpHeaders getHandshakeHeaders() {
+		return delegate.getHandshakeInfo().getHeaders();
+	}
+	
+	@Override
+	public Map<String, Object> getAttributes() {
+		return delegate.getAttributes();
+	}
+	
+	@Override
+	public Principal getPrincipal() {
+		// 身份通过token在处理器中校验，不依赖握手Principal
+		return null;
+	}
+	
+	@Override
+	public InetSocketAddress getLocalAddress() {
+		return null;
+	}
+	
+	@Override
+	public InetSocketAddress getRemoteAddress() {
+		return delegate.getHandshakeInfo().getRemoteAddress();
+	}
+	
+	@Override
+	public String getAcceptedProtocol() {
+		return delegate.getHandshakeInfo().getSubProtocol();
+	}
+	
+	@Override
+	public void setTextMessageSizeLimit(int messageSizeLimit) {
+		this.textMessageSizeLimit = messageSizeLimit;
+	}
+	
+	@Override
+	public int getTextMessageSizeLimit() {
+		return textMessageSizeLimit;
+	}
+	
+	@Override
+	public void setBinaryMessageSizeLimit(int messageSizeLimit) {
+		this.binaryMessageSizeLimit = messageSizeLimit;
+	}
+	
+	@Override
+	public int getBinaryMessageSizeLimit() {
+		return binaryMessageSizeLimit;
+	}
+	
+	@Override
+	public List<WebSocketExtension> getExtensions() {
+		return List.of();
+	}
+	
+	@Override
+	public void sendMessage(WebSocketMessage<?> message) throws IOException {
+		if (!(message instanceof TextMessage textMessage)) {
+			throw new IOException("仅支持文本消息: " + message.getClass().getSimpleName());
+		}
+		if (closed) {
+			throw new IOException("会话正在关闭: sessionId=" + getId());
+		}
+		if (PENDING.incrementAndGet(this) > MAX_PENDING_MESSAGES) {
+			PENDING.decrementAndGet(this);
+			throw new IOException("出站队列已满: sessionId=" + getId());
+		}
+		// 不使用emitNext：出站流已结束（FAIL_TERMINATED/FAIL_CANCELLED）时emitNext静默丢弃消息，调用方会误认为已送达
+		long deadline = System.nanoTime() + EMIT_BUSY_LOOPING.toNanos();
+		Sinks.EmitResult result;
+		while ((result = outbound.tryEmitNext(textMessage.getPayload())) == Sinks.EmitResult.FAIL_NON_SERIALIZED
+				&& System.nanoTime() < deadline) {
+			Thread.onSpinWait();
+		}
+		if (result.isFailure()) {
+			PENDING.decrementAndGet(this);
+			throw new IOException("写入出站队列失败: sessionId=" + getId() + ", result=" + result);
+		}
+	}
+	
+	@Override
+	public boolean isOpen() {
+		return delegate.isOpen();
+	}
+	
+	@Override
+	public void close() throws IOException {
+		close(CloseStatus.NORMAL);
+	}
+	
+	@Override
+	public void close(CloseStatus status) throws IOException {
+		if (!CLOSE_STATUS.compareAndSet(this, null, status)) {
+			return;
+		}
+		// 结束出站流，已入队的消息写完后由处理器调用closeDelegate关闭连接
+		completeOutbound();
+		// 客户端不读导致出站流无法写完时，超时后强制关闭
+		Mono.delay(CLOSE_TIMEOUT)
+				.then(Mono.defer(this::closeDelegate))
+				.subscribe();
+	}
+	
+}
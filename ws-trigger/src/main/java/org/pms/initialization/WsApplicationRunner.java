@@ -3,12 +3,15 @@ package org.pms.initialization;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.pms.api.utils.JwtUtil;
+import org.pms.core.service.PublicKeyService;
 import org.pms.trigger.feign.IAuthRpcClient;
 import org.pms.types.AuthCode;
 import org.pms.types.Response;
 import org.pms.types.WsCode;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
@@ -17,55 +20,131 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * @author alcsyooterranf
  * @program PressureMonitorSys-ws
- * @description 项目启动后依赖编排
+ * @description 项目启动后依赖编排: 启动时加载公钥, 后台定时或验签失败时校验并热更新公钥
  * @create 2025/12/14
  */
 @Slf4j
 @Component
-public class WsApplicationRunner implements InitializingBean {
+public class WsApplicationRunner implements InitializingBean, PublicKeyService {
 	
 	@Resource
 	private IAuthRpcClient authRpcClient;
 	
+	/**
+	 * Spring Boot自动配置的任务执行器，用于执行按需触发的公钥刷新
+	 */
+	@Resource(name = "applicationTaskExecutor")
+	private AsyncTaskExecutor taskExecutor;
+	
 	@Value("${rpc.auth.public-key-path}")
 	private String publicKeyPath;
 	
+	// 按需刷新（验签失败触发）的最小间隔（毫秒），避免无效token导致频繁调用认证服务
+	@Value("${rpc.auth.public-key-refresh-min-interval:30000}")
+	private long refreshMinInterval;
+	
+	private volatile boolean keyLoaded = false;
+	
+	private final AtomicLong lastRefreshRequestTime = new AtomicLong(0);
+	
+	/**
+	 * 刷新互斥锁，定时刷新与按需刷新不并发执行
+	 * 不使用synchronized：vt模式下刷新运行在虚拟线程上，在synchronized块内阻塞于Feign调用会固定载体线程
+	 */
+	private final ReentrantLock refreshLock = new ReentrantLock();
+	
+	/**
+	 * 启动阶段优先加载本地缓存公钥，不调用认证服务，避免认证服务缓慢时阻塞整个节点启动
+	 * 本地无公钥（如新容器首次启动）时同样不阻塞启动：后台任务启动后立即获取，
+	 * 公钥就绪前握手返回可重试的关闭状态并触发按需刷新
+	 * 公钥一致性检查与更新由后台任务{@link #refreshPublicKey()}完成
+	 */
 	@Override
 	public void afterPropertiesSet() throws Exception {
 		log.info("开始初始化公钥配置...");
 		
-		// 1. 检查本地是否有公钥
-		if (!hasLocalPublicKey()) {
-			log.info("本地未找到公钥，从认证服务获取公钥");
-			// 如果没有，则获取公钥并保存
-			String publicKey = fetchPublicKeyFromAuthService();
-			savePublicKey(publicKey);
-			log.info("公钥获取并保存成功");
+		if (hasLocalPublicKey()) {
+			loadKey();
+			log.info("已加载本地缓存公钥，一致性检查转入后台执行");
 		} else {
-			log.info("本地已存在公钥，检查公钥是否一致");
-			// 如果有，则检查公钥是否一致
-			String localPublicKey = readLocalPublicKey();
-			boolean isConsistent = checkPublicKeyConsistency(localPublicKey);
+			log.info("本地未找到公钥，由后台任务从认证服务获取，公钥就绪前拒绝WebSocket握手");
+		}
+		
+		log.info("公钥配置初始化完成");
+	}
+	
+	@Override
+	public boolean isKeyLoaded() {
+		return keyLoaded;
+	}
+	
+	@Override
+	public void requestRefresh() {
+		long now = System.currentTimeMillis();
+		long last = lastRefreshRequestTime.get();
+		if (now - last < refreshMinInterval || !lastRefreshRequestTime.compareAndSet(last, now)) {
+			return;
+		}
+		log.info("验签失败或公钥未就绪，触发公钥刷新");
+		taskExecutor.execute(this::refreshPublicKey);
+	}
+	
+	/**
+	 * 后台公钥刷新任务
+	 * 启动后立即执行一次，之后按rpc.auth.public-key-refresh-interval周期执行，也可由验签失败按需触发：
+	 * 1. 本地无公钥时从认证服务获取并保存
+	 * 2. 本地公钥与认证服务不一致（密钥轮换）时获取最新公钥并保存
+	 * 公钥更新后重新初始化JwtUtil，无需重启即可生效
+	 * 已有刷新在执行时直接跳过
+	 */
+	@Scheduled(initialDelay = 0, fixedDelayString = "${rpc.auth.public-key-refresh-interval:300000}")
+	public void refreshPublicKey() {
+		if (!refreshLock.tryLock()) {
+			log.debug("公钥刷新正在执行，跳过本次刷新");
+			return;
+		}
+		try {
+			if (!hasLocalPublicKey()) {
+				log.info("本地未找到公钥，从认证服务获取公钥");
+				savePublicKey(fetchPublicKeyFromAuthService());
+				loadKey();
+				log.info("公钥获取并加载成功");
+				return;
+			}
 			
-			// 2. 如果不一致，则获取最新的公钥并保存
-			if (!isConsistent) {
-				log.warn("本地公钥与认证服务不一致，更新公钥");
-				String newPublicKey = fetchPublicKeyFromAuthService();
-				savePublicKey(newPublicKey);
-				log.info("公钥更新成功");
-			} else {
-				log.info("公钥一致性检查通过");
+			String localPublicKey = readLocalPublicKey();
+			if (checkPublicKeyConsistency(localPublicKey)) {
+				// 本地文件可能是刷新任务之前保存的，但加载失败过
+				if (!keyLoaded) {
+					loadKey();
+				}
+				log.debug("公钥一致性检查通过");
+				return;
 			}
+			
+			log.warn("本地公钥与认证服务不一致，更新公钥");
+			savePublicKey(fetchPublicKeyFromAuthService());
+			loadKey();
+			log.info("公钥更新成功，已热加载新公钥");
+		} catch (Exception e) {
+			log.error("后台刷新公钥失败，等待下次调度重试: {}", e.getMessage(), e);
+		} finally {
+			refreshLock.unlock();
 		}
-		
-		// 3. 初始化公钥
+	}
+	
+	/**
+	 * 将本地公钥加载到JwtUtil
+	 */
+	private void loadKey() throws Exception {
 		JwtUtil.initKey();
-		
-		log.info("公钥配置初始化完成");
+		keyLoaded = true;
 	}
 	
 	/**
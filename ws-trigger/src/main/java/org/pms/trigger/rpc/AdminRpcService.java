@@ -0,0 +1,89 @@
+package org.pms.trigger.rpc;
+
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.pms.core.service.SessionDrainService;
+import org.pms.core.service.WebSocketSessionManager;
+import org.pms.types.Response;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * 节点运维接口
+ * 供发布脚本在下线节点前调用，请求需携带X-Admin-Token请求头，值与ws.admin.token一致；
+ * 未配置ws.admin.token时接口整体禁用
+ *
+ * @author alcsyooterranf
+ * @version 1.0
+ * @since 2026-10-18
+ */
+@Slf4j
+@RestController
+@RequestMapping("/rpc/ws/admin")
+public class AdminRpcService {
+	
+	private static final String ADMIN_TOKEN_HEADER = "X-Admin-Token";
+	
+	@Resource
+	private SessionDrainService drainService;
+	
+	@Resource
+	private WebSocketSessionManager sessionManager;
+	
+	@Value("${ws.admin.token:}")
+	private String adminToken;
+	
+	/**
+	 * 开始排空本节点会话，立即返回，排空在后台分批进行
+	 *
+	 * @return 响应结果
+	 */
+	@PostMapping("/drain")
+	public Response<Void> drain(@RequestHeader(value = ADMIN_TOKEN_HEADER, required = false) String token) {
+		checkAdminToken(token);
+		log.info("收到排空请求: 当前在线人数={}", sessionManager.getOnlineCount());
+		drainService.startDrain();
+		return Response.<Void>builder()
+				.message(String.format("开始排空: 当前在线人数=%d", sessionManager.getOnlineCount()))
+				.build();
+	}
+	
+	/**
+	 * 取消排空，恢复接收新会话
+	 *
+	 * @return 响应结果
+	 */
+	@PostMapping("/undrain")
+	public Response<Void> undrain(@RequestHeader(value = ADMIN_TOKEN_HEADER, required = false) String token) {
+		checkAdminToken(token);
+		boolean cancelled = drainService.cancelDrain();
+		log.info("收到取消排空请求: 结果={}", cancelled);
+		return Response.<Void>builder()
+				.message(cancelled ? "已取消排空" : "当前未在排空或应用正在关闭")
+				.build();
+	}
+	
+	/**
+	 * 校验运维token，不通过时返回403
+	 */
+	private void checkAdminToken(String token) {
+		if (StringUtils.isBlank(adminToken)) {
+			throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Admin endpoint disabled");
+		}
+		if (token == null || !MessageDigest.isEqual(
+				adminToken.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8))) {
+			log.warn("运维接口token校验失败");
+			throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Invalid admin token");
+		}
+	}
+	
+}
@@ -1,18 +1,36 @@
 package org.pms.trigger.rpc;
 
 import com.alibaba.fastjson2.JSON;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.pms.api.IPushRpcService;
+import org.pms.api.dto.PresenceChanges;
+import org.pms.api.utils.PresenceBitmap;
+import org.pms.core.filter.AlertFilters;
+import org.pms.core.service.PresenceEventLog;
+import org.pms.core.service.PushDeduplicator;
 import org.pms.core.service.WebSocketSessionManager;
 import org.pms.types.Response;
+import org.pms.types.WsCode;
+import org.springframework.boot.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 
-import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 
 /**
  * 消息主动推送服务
@@ -30,67 +48,165 @@ public class PushRpcService implements IPushRpcService {
 	@Resource
 	private WebSocketSessionManager sessionManager;
 	
+	@Resource
+	private PushDeduplicator pushDeduplicator;
+	
+	@Resource
+	private PresenceEventLog presenceEventLog;
+	
+	@Resource
+	private Environment environment;
+	
+	/**
+	 * Spring Boot自动配置的任务执行器
+	 * spring.threads.virtual.enabled=true且运行在Java 21+时为虚拟线程执行器，否则为平台线程池
+	 */
+	@Resource(name = "applicationTaskExecutor")
+	private AsyncTaskExecutor taskExecutor;
+	
+	/**
+	 * 是否启用虚拟线程模式，启用后广播按会话并发发送，慢连接不再拖慢整批推送
+	 */
+	private boolean virtualThreads;
+	
+	@PostConstruct
+	public void init() {
+		virtualThreads = Threading.VIRTUAL.isActive(environment);
+		log.info("消息推送线程模式: {}", virtualThreads ? "virtual" : "platform");
+	}
+	
 	/**
 	 * 广播消息给所有在线用户
 	 *
-	 * @param data 数据
+	 * @param idempotencyKey 幂等key，为空时不去重
+	 * @param data           数据
 	 * @return 响应结果
 	 */
+	@Override
 	@PostMapping("/broadcast")
-	public Response<Void> broadcast(@RequestBody Map<String, Object> data) {
-		log.info("收到广播数据: data={}", data);
-		
-		int successCount = 0;
-		int failCount = 0;
-		
-		for (WebSocketSessionManager.SessionInfo sessionInfo : sessionManager.getAllSessions()) {
-			try {
-				sendToSession(sessionInfo.getSession(), data);
-				successCount++;
-			} catch (Exception e) {
-				log.error("发送消息失败: userId={}, username={}, sessionId={}, error={}",
-						sessionInfo.getUserId(), sessionInfo.getUsername(),
-						sessionInfo.getSession().getId(), e.getMessage());
-				failCount++;
-			}
+	public Response<Void> broadcast(@RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+	                                @RequestBody Map<String, Object> data) {
+		log.info("收到广播数据: idempotencyKey={}, data={}", idempotencyKey, data);
+		return broadcastToSessions(sessionManager.getAllSessions(), idempotencyKey, data);
+	}
+	
+	/**
+	 * 按受众广播消息（角色或会话属性），多个受众取并集
+	 *
+	 * @param idempotencyKey 幂等key，为空时不去重
+	 * @param audiences      受众列表，如ROLE_admin、district=east
+	 * @param data           数据
+	 * @return 响应结果
+	 */
+	@Override
+	@PostMapping("/broadcast/audience")
+	public Response<Void> broadcastToAudience(@RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+	                                          String[] audiences, @RequestBody Map<String, Object> data) {
+		log.info("收到受众广播数据: idempotencyKey={}, audiences={}, data={}", idempotencyKey, audiences, data);
+		if (audiences == null || audiences.length == 0) {
+			log.warn("受众广播缺少audiences参数");
+			return Response.<Void>builder()
+					.code(WsCode.ILLEGAL_PARAMETER.getCode())
+					.message("受众广播失败: audiences不能为空")
+					.build();
 		}
-		log.info("消息广播完成: 成功={}, 失败={}, 总数={}", successCount, failCount, successCount + failCount);
-		return Response.<Void>builder()
-				.message(String.format("消息广播完成: 成功=%d, 失败=%d, 总数=%d", successCount, failCount, successCount + failCount))
-				.build();
+		return broadcastToSessions(sessionManager.getAudienceSessions(audiences), idempotencyKey, data);
 	}
 	
 	/**
 	 * 推送消息给指定用户列表
 	 *
-	 * @param userIds 用户ID列表
+	 * @param idempotencyKey 幂等key，为空时不去重；重试时已送达的用户会被跳过
+	 * @param userIds        用户ID列表
 	 * @return 响应结果
 	 */
 	@Override
 	@PostMapping("/push/batch")
-	public Response<Void> pushToUsers(Long[] userIds, @RequestBody Map<String, Object> data) {
-		log.info("推送消息给指定用户列表: userIds={}, alertData={}", userIds, data);
+	public Response<Void> pushToUsers(@RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+	                                  Long[] userIds, @RequestBody Map<String, Object> data) {
+		log.info("推送消息给指定用户列表: idempotencyKey={}, userIds={}, alertData={}", idempotencyKey, userIds, data);
 		
+		TextMessage message = buildAlertMessage(data);
+		Claims<Long> claims = claimAll(Arrays.asList(userIds), userId -> userId, idempotencyKey);
+		int successCount = pushToClaimedUsers(claims.owned, idempotencyKey, message);
+		// 其他请求正在发送的用户，等待其结果，失败的由本次补发
+		successCount += pushToClaimedUsers(awaitOthers(claims, userId -> userId, idempotencyKey), idempotencyKey, message);
+		log.info("消息推送完成: 成功={}, 已送达跳过={}, 未确认={}, 总数={}",
+				successCount, claims.duplicateCount, claims.unconfirmedCount, userIds.length);
+		return Response.<Void>builder()
+				.message(String.format("消息推送完成: 成功=%d, 已送达跳过=%d, 未确认=%d, 总数=%d",
+						successCount, claims.duplicateCount, claims.unconfirmedCount, userIds.length))
+				.build();
+	}
+	
+	/**
+	 * 批量查询用户在线状态
+	 *
+	 * @param userIds 用户ID列表
+	 * @return Base64编码的在线状态位图，第i位对应userIds[i]
+	 */
+	@Override
+	@PostMapping("/presence")
+	public Response<String> queryPresence(@RequestBody Long[] userIds) {
+		BitSet online = new BitSet(userIds.length);
+		for (int i = 0; i < userIds.length; i++) {
+			if (userIds[i] != null && sessionManager.isOnline(userIds[i])) {
+				online.set(i);
+			}
+		}
+		log.info("批量查询在线状态: 查询数={}, 在线数={}", userIds.length, online.cardinality());
+		return Response.<String>builder()
+				.message(String.format("在线状态查询完成: 在线=%d, 总数=%d", online.cardinality(), userIds.length))
+				.data(PresenceBitmap.encode(online))
+				.build();
+	}
+	
+	/**
+	 * 拉取在线状态变更事件
+	 *
+	 * @param epoch    上次返回的epoch，首次不传
+	 * @param afterSeq 上次拉取到的事件序号，首次传0
+	 * @param limit    单次最多返回的事件数，默认1000，最大10000
+	 * @return 变更事件批次
+	 */
+	@Override
+	@GetMapping("/presence/changes")
+	public Response<PresenceChanges> queryPresenceChanges(@RequestParam(required = false) String epoch,
+	                                                      @RequestParam(defaultValue = "0") Long afterSeq,
+	                                                      @RequestParam(defaultValue = "1000") Integer limit) {
+		PresenceChanges changes = presenceEventLog.since(epoch, afterSeq, Math.min(Math.max(limit, 1), 10000));
+		log.debug("拉取在线状态变更: epoch={}, afterSeq={}, 返回数={}, lastSeq={}, truncated={}",
+				epoch, afterSeq, changes.getEvents().size(), changes.getLastSeq(), changes.getTruncated());
+		return Response.<PresenceChanges>builder()
+				.data(changes)
+				.build();
+	}
+	
+	/**
+	 * 逐个推送给已认领的用户，并记录发送结果
+	 *
+	 * @return 发送成功数
+	 */
+	private int pushToClaimedUsers(List<Long> userIds, String idempotencyKey, TextMessage message) {
 		int successCount = 0;
 		for (Long userId : userIds) {
-			if (pushToUser(userId, data)) {
+			boolean delivered = pushToUser(userId, message);
+			pushDeduplicator.complete(idempotencyKey, userId, delivered);
+			if (delivered) {
 				successCount++;
 			}
 		}
-		log.info("消息推送完成: 成功={}, 总数={}", successCount, userIds.length);
-		return Response.<Void>builder()
-				.message(String.format("消息推送完成: 成功=%d, 总数=%d", successCount, userIds.length))
-				.build();
+		return successCount;
 	}
 	
 	/**
 	 * 推送消息给指定用户
 	 *
-	 * @param userId 用户ID
-	 * @param data   数据
+	 * @param userId  用户ID
+	 * @param message 告警消息
 	 * @return 响应结果
 	 */
-	private Boolean pushToUser(@PathVariable Long userId, @RequestBody Map<String, Object> data) {
+	private Boolean pushToUser(Long userId, TextMessage message) {
 		WebSocketSession session = sessionManager.getSessionByUserId(userId);
 		if (session == null || !session.isOpen()) {
 			log.warn("用户不在线，无法推送消息: userId={}", userId);
@@ -98,7 +214,7 @@ public class PushRpcService implements IPushRpcService {
 		}
 		
 		try {
-			sendToSession(session, data);
+			session.sendMessage(message);
 			log.info("消息推送成功: userId={}", userId);
 			return true;
 		} catch (Exception e) {
@@ -108,22 +224,223 @@ public class PushRpcService implements IPushRpcService {
 	}
 	
 	/**
-	 * 发送消息到WebSocket会话
+	 * 广播消息给指定的会话集合，跳过订阅过滤器不匹配的会话
 	 *
-	 * @param session WebSocket会话
-	 * @param data    数据
-	 * @throws IOException 发送失败时抛出异常
+	 * @param sessions       会话集合
+	 * @param idempotencyKey 幂等key，为空时不去重
+	 * @param data           数据
+	 * @return 响应结果
 	 */
-	private void sendToSession(WebSocketSession session, Map<String, Object> data) throws IOException {
+	private Response<Void> broadcastToSessions(Collection<WebSocketSessionManager.SessionInfo> sessions,
+	                                           String idempotencyKey, Map<String, Object> data) {
+		long startTime = System.currentTimeMillis();
+		List<WebSocketSessionManager.SessionInfo> matched = applyFilters(sessions, data);
+		int filteredCount = sessions.size() - matched.size();
+		// 消息只序列化一次，所有接收者共享
+		TextMessage message = buildAlertMessage(data);
+		
+		Claims<WebSocketSessionManager.SessionInfo> claims =
+				claimAll(matched, WebSocketSessionManager.SessionInfo::getUserId, idempotencyKey);
+		int successCount = send(claims.owned, idempotencyKey, message);
+		// 其他请求正在发送的用户，等待其结果，失败的由本次补发
+		List<WebSocketSessionManager.SessionInfo> retried =
+				awaitOthers(claims, WebSocketSessionManager.SessionInfo::getUserId, idempotencyKey);
+		successCount += send(retried, idempotencyKey, message);
+		int duplicateCount = claims.duplicateCount;
+		int unconfirmedCount = claims.unconfirmedCount;
+		
+		int total = claims.owned.size() + retried.size();
+		int failCount = total - successCount;
+		long cost = System.currentTimeMillis() - startTime;
+		
+		String mode = virtualThreads ? "virtual" : "platform";
+		log.info("消息广播完成: 成功={}, 失败={}, 总数={}, 过滤={}, 已送达跳过={}, 未确认={}, 耗时={}ms, 线程模式={}",
+				successCount, failCount, total, filteredCount, duplicateCount, unconfirmedCount, cost, mode);
+		return Response.<Void>builder()
+				.message(String.format("消息广播完成: 成功=%d, 失败=%d, 未确认=%d, 总数=%d",
+						successCount, failCount, unconfirmedCount, total))
+				.build();
+	}
+	
+	/**
+	 * 按会话订阅过滤器筛选接收者
+	 *
+	 * @return 需要发送的会话
+	 */
+	private List<WebSocketSessionManager.SessionInfo> applyFilters(Collection<WebSocketSessionManager.SessionInfo> sessions,
+	                                                               Map<String, Object> data) {
+		return AlertFilters.select(sessions, WebSocketSessionManager.SessionInfo::getFilter, data);
+	}
+	
+	/**
+	 * 幂等认领结果
+	 */
+	private static final class Claims<T> {
+		
+		// 由本次请求发送
+		private final List<T> owned = new ArrayList<>();
+		
+		// 其他请求正在发送，需等待其结果
+		private final Map<T, CompletableFuture<Boolean>> pending = new LinkedHashMap<>();
+		
+		// 已送达，跳过
+		private int duplicateCount;
+		
+		// 其他请求在等待时限内仍未完成发送，本次不重复发送，结果未确认
+		private int unconfirmedCount;
+		
+	}
+	
+	/**
+	 * 在幂等key下逐个认领接收者，防止并发重试重复发送
+	 *
+	 * @param recipients     接收者
+	 * @param userIdOf       接收者对应的用户ID
+	 * @param idempotencyKey 幂等key，为空时全部由本次发送
+	 * @return 认领结果
+	 */
+	private <T> Claims<T> claimAll(Collection<T> recipients, Function<T, Long> userIdOf, String idempotencyKey) {
+		Claims<T> claims = new Claims<>();
+		for (T recipient : recipients) {
+			CompletableFuture<Boolean> other = pushDeduplicator.claim(idempotencyKey, userIdOf.apply(recipient));
+			if (other == null) {
+				claims.owned.add(recipient);
+			} else if (other.isDone()) {
+				claims.duplicateCount++;
+			} else {
+				claims.pending.put(recipient, other);
+			}
+		}
+		return claims;
+	}
+	
+	/**
+	 * 等待其他请求的发送结果（整批共用一个等待时限），对发送失败的接收者重新认领
+	 * 等待结束仍未完成的接收者计为未确认，不计为已送达
+	 *
+	 * @return 需要由本次补发的接收者
+	 */
+	private <T> List<T> awaitOthers(Claims<T> claims, Function<T, Long> userIdOf, String idempotencyKey) {
+		pushDeduplicator.awaitAll(claims.pending.values());
+		List<T> retried = new ArrayList<>();
+		for (Map.Entry<T, CompletableFuture<Boolean>> entry : claims.pending.entrySet()) {
+			CompletableFuture<Boolean> other = entry.getValue();
+			if (other.isDone() && Boolean.TRUE.equals(other.getNow(false))) {
+				claims.duplicateCount++;
+				continue;
+			}
+			if (!other.isDone()) {
+				claims.unconfirmedCount++;
+				continue;
+			}
+			// 发送失败，重新认领；认领不到说明又有其他请求接手
+			CompletableFuture<Boolean> current = pushDeduplicator.claim(idempotencyKey, userIdOf.apply(entry.getKey()));
+			if (current == null) {
+				retried.add(entry.getKey());
+			} else if (current.isDone()) {
+				claims.duplicateCount++;
+			} else {
+				claims.unconfirmedCount++;
+			}
+		}
+		return retried;
+	}
+	
+	/**
+	 * 按线程模式发送给一批会话
+	 *
+	 * @return 发送成功数
+	 */
+	private int send(List<WebSocketSessionManager.SessionInfo> sessions, String idempotencyKey,
+	                 TextMessage message) {
+		if (sessions.isEmpty()) {
+			return 0;
+		}
+		return virtualThreads
+				? sendConcurrently(sessions, idempotencyKey, message)
+				: sendSequentially(sessions, idempotencyKey, message);
+	}
+	
+	/**
+	 * 平台线程模式：在请求线程上逐个发送
+	 *
+	 * @return 发送成功数
+	 */
+	private int sendSequentially(Collection<WebSocketSessionManager.SessionInfo> sessions, String idempotencyKey,
+	                             TextMessage message) {
+		int successCount = 0;
+		for (WebSocketSessionManager.SessionInfo sessionInfo : sessions) {
+			if (sendSafely(sessionInfo, idempotencyKey, message)) {
+				successCount++;
+			}
+		}
+		return successCount;
+	}
+	
+	/**
+	 * 虚拟线程模式：每个会话一个虚拟线程并发发送，等待全部完成
+	 *
+	 * @return 发送成功数
+	 */
+	private int sendConcurrently(Collection<WebSocketSessionManager.SessionInfo> sessions, String idempotencyKey,
+	                             TextMessage message) {
+		List<Future<Boolean>> futures = new ArrayList<>(sessions.size());
+		for (WebSocketSessionManager.SessionInfo sessionInfo : sessions) {
+			futures.add(taskExecutor.submit(() -> sendSafely(sessionInfo, idempotencyKey, message)));
+		}
+		
+		int successCount = 0;
+		for (Future<Boolean> future : futures) {
+			try {
+				if (future.get()) {
+					successCount++;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				log.warn("等待并发推送结果被中断");
+				break;
+			} catch (Exception e) {
+				log.error("并发推送任务异常: error={}", e.getMessage());
+			}
+		}
+		return successCount;
+	}
+	
+	/**
+	 * 发送消息到会话，异常时记录日志并返回false
+	 * 发送结果记录到幂等去重中，失败的用户在重试时可以补发
+	 *
+	 * @return true-成功，false-失败
+	 */
+	private boolean sendSafely(WebSocketSessionManager.SessionInfo sessionInfo, String idempotencyKey,
+	                           TextMessage message) {
+		boolean delivered = false;
+		try {
+			sessionInfo.getSession().sendMessage(message);
+			delivered = true;
+		} catch (Exception e) {
+			log.error("发送消息失败: userId={}, username={}, sessionId={}, error={}",
+					sessionInfo.getUserId(), sessionInfo.getUsername(),
+					sessionInfo.getSession().getId(), e.getMessage());
+		} finally {
+			pushDeduplicator.complete(idempotencyKey, sessionInfo.getUserId(), delivered);
+		}
+		return delivered;
+	}
+	
+	/**
+	 * 构造告警消息
+	 *
+	 * @param data 数据
+	 * @return 序列化后的消息，可在多个会话间共享
+	 */
+	private TextMessage buildAlertMessage(Map<String, Object> data) {
 		// 构造消息格式
 		Map<String, Object> message = new HashMap<>();
 		message.put("type", "alert");
 		message.put("timestamp", System.currentTimeMillis());
 		message.put("data", data);
-		
-		// 发送消息
-		String jsonMessage = JSON.toJSONString(message);
-		session.sendMessage(new TextMessage(jsonMessage));
+		return new TextMessage(JSON.toJSONString(message));
 	}
 	
 }